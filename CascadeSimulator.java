@@ -0,0 +1,158 @@
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Monte Carlo simulation of the independent cascade model. When a node is
+ * infected, it gets one chance to infect each of its neighbors in the next
+ * generation, succeeding with probability weight / 100 for the edge between
+ * them. Each weight's probability is turned into a 32-bit threshold, so a
+ * trial draws one random int per attempt and compares it. Edges are read
+ * through a cursor of the graph, so nothing is kept per edge.
+ *
+ * Trials are split into blocks of BLOCK, each drawing from its own
+ * SplittableRandom split off the caller's seed in order, so the results do
+ * not depend on how the blocks are spread over threads. Workers take blocks
+ * from a shared counter and keep their own state arrays; an infected node
+ * is stamped with the trial number, so nothing is cleared between trials.
+ */
+public class CascadeSimulator
+{
+    // Trials drawing from one random generator
+    private static final int BLOCK = 64;
+
+    // Transmit along an edge of weight w when an unsigned random int is below THRESHOLD[w]
+    private static final long[] THRESHOLD = new long[101];
+
+    static
+    {
+        for (int w = 0; w <= 100; w++)
+            THRESHOLD[w] = ((long) w << 32) / 100;
+    }
+
+    private final Graph graph;
+    private final int   n;
+
+
+    /**
+     * @param graph the graph to spread on; it must not change while trials run
+     */
+    CascadeSimulator(Graph graph)
+    {
+        this.graph = graph;
+        n = graph.nodeCount();
+    }
+
+
+    // Threshold of a weight, clamped to the probabilities 0 and 1
+    private static long threshold(int weight)
+    {
+        return THRESHOLD[Math.max(0, Math.min(100, weight))];
+    }
+
+
+    /**
+     * Run independent outbreaks from a seed
+     *
+     * @param seed       the first infected node
+     * @param trials     the number of outbreaks
+     * @param randomSeed the seed of the random generators
+     * @param pool       the pool that runs the trials
+     * @return the final sizes and generation curves of the outbreaks
+     */
+    CascadeStats simulate(int seed, int trials, long randomSeed, ForkJoinPool pool)
+    {
+        int blocks = (trials + BLOCK - 1) / BLOCK;
+        SplittableRandom root = new SplittableRandom(randomSeed);
+        SplittableRandom[] randoms = new SplittableRandom[blocks];
+        for (int b = 0; b < blocks; b++)
+            randoms[b] = root.split();
+
+        int[] finalSizes = new int[trials];
+        int workers = Math.max(1, Math.min(pool.getParallelism(), blocks));
+        long[][] newCases = new long[workers][];
+        AtomicInteger next = new AtomicInteger();
+        Parallel.forEach(pool, workers, worker -> {
+            Trial trial = new Trial();
+            for (int b = next.getAndIncrement(); b < blocks; b = next.getAndIncrement())
+            {
+                int end = Math.min(trials, (b + 1) * BLOCK);
+                for (int t = b * BLOCK; t < end; t++)
+                    finalSizes[t] = trial.run(seed, randoms[b]);
+            }
+            newCases[worker] = trial.newCases;
+        });
+
+        long[] total = new long[1];
+        for (long[] cases : newCases)
+        {
+            if (cases.length > total.length)
+                total = Arrays.copyOf(total, cases.length);
+            for (int g = 0; g < cases.length; g++)
+                total[g] += cases[g];
+        }
+        int generations = total.length;
+        while (generations > 1 && total[generations - 1] == 0)
+            generations--;
+        return new CascadeStats(n - 1, finalSizes, Arrays.copyOf(total, generations));
+    }
+
+
+    /**
+     * State of one worker: the infection stamps and the queue of infected
+     * nodes, in order of generation, plus the new cases of every generation
+     * summed over the worker's trials.
+     */
+    private class Trial
+    {
+        private final int[]          infected = new int[n];
+        private final int[]          queue    = new int[n];
+        private final NeighborCursor row      = graph.cursor();
+        private long[]               newCases = new long[16];
+        private int                  stamp;
+
+
+        // Run one outbreak and return the number of nodes it infected
+        int run(int seed, SplittableRandom random)
+        {
+            if (++stamp == Integer.MAX_VALUE)
+            {
+                Arrays.fill(infected, 0);
+                stamp = 1;
+            }
+            infected[seed] = stamp;
+            queue[0] = seed;
+            newCases[0]++;
+            int head = 0;
+            int tail = 1;
+            int generation = 0;
+            while (head < tail)
+            {
+                int generationEnd = tail;
+                while (head < generationEnd)
+                {
+                    row.reset(queue[head++]);
+                    int[] ids = row.ids();
+                    for (int i = row.start(), end = row.end(); i < end; i++)
+                    {
+                        int v = ids[i];
+                        if (infected[v] != stamp
+                            && (random.nextInt() & 0xFFFFFFFFL) < threshold(row.weight(i)))
+                        {
+                            infected[v] = stamp;
+                            queue[tail++] = v;
+                        }
+                    }
+                }
+                if (tail > generationEnd)
+                {
+                    if (++generation == newCases.length)
+                        newCases = Arrays.copyOf(newCases, generation * 2);
+                    newCases[generation] += tail - generationEnd;
+                }
+            }
+            return tail;
+        }
+    }
+}
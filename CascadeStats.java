@@ -0,0 +1,109 @@
+/**
+ * Outcome of a batch of simulated outbreaks: the final size of every trial
+ * and the new cases of every generation, summed over the trials. The seed
+ * counts as the one case of generation 0.
+ */
+public class CascadeStats
+{
+    private final int    population;
+    private final int[]  finalSizes;
+    private final long[] newCases;
+
+
+    /**
+     * @param population the number of nodes an outbreak could reach
+     * @param finalSizes the number of nodes infected in each trial
+     * @param newCases   the new cases of each generation, summed over trials
+     */
+    CascadeStats(int population, int[] finalSizes, long[] newCases)
+    {
+        this.population = population;
+        this.finalSizes = finalSizes;
+        this.newCases = newCases;
+    }
+
+
+    /**
+     * @return the number of trials run
+     */
+    public int trials()
+    {
+        return finalSizes.length;
+    }
+
+
+    /**
+     * @param trial a trial number
+     * @return the number of nodes infected in that trial, seed included
+     */
+    public int finalSize(int trial)
+    {
+        return finalSizes[trial];
+    }
+
+
+    /**
+     * @return for every size from 0 to the number of nodes, how many trials
+     *         ended with that many nodes infected
+     */
+    public int[] finalSizeDistribution()
+    {
+        int[] counts = new int[population + 1];
+        for (int size : finalSizes)
+            counts[size]++;
+        return counts;
+    }
+
+
+    /**
+     * @return the mean number of nodes infected per trial
+     */
+    public double meanFinalSize()
+    {
+        long sum = 0;
+        for (int size : finalSizes)
+            sum += size;
+        return finalSizes.length == 0 ? 0 : (double) sum / finalSizes.length;
+    }
+
+
+    /**
+     * @param fraction a fraction of the nodes
+     * @return the share of trials that infected at least that fraction
+     */
+    public double probabilityOfReaching(double fraction)
+    {
+        int needed = (int) Math.ceil(fraction * population);
+        int count = 0;
+        for (int size : finalSizes)
+            if (size >= needed)
+                count++;
+        return finalSizes.length == 0 ? 0 : (double) count / finalSizes.length;
+    }
+
+
+    /**
+     * @return the mean number of new cases in each generation, up to the
+     *         last generation any trial reached
+     */
+    public double[] meanNewCases()
+    {
+        double[] mean = new double[newCases.length];
+        for (int g = 0; g < newCases.length; g++)
+            mean[g] = (double) newCases[g] / Math.max(1, finalSizes.length);
+        return mean;
+    }
+
+
+    /**
+     * @return the mean number of nodes infected by the end of each
+     *         generation, in the same generations as {@link #meanNewCases}
+     */
+    public double[] meanCumulativeCases()
+    {
+        double[] mean = meanNewCases();
+        for (int g = 1; g < mean.length; g++)
+            mean[g] += mean[g - 1];
+        return mean;
+    }
+}
@@ -0,0 +1,890 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Contraction hierarchy (Geisberger et al., "Contraction Hierarchies:
+ * Faster and Simpler Hierarchical Routing in Road Networks") over the most
+ * probable path costs -log(w / 100). Nodes are contracted one at a time,
+ * least important first. Contracting v adds a shortcut u-w for every pair
+ * of its remaining neighbors whose best path runs through v, unless a local
+ * witness search finds another path at most as costly. A query then only
+ * follows edges to more important nodes, from both ends, and the shortcuts
+ * on the path found are unpacked into the original vertices.
+ *
+ * Social graphs have a dense core where contraction would add shortcuts
+ * quadratically, so contraction stops once the next node would need more
+ * than CORE_SHORTCUTS of them. The nodes left form the core; they rank above
+ * every contracted node and their edges are followed in both directions, so
+ * inside the core a query is a plain bidirectional Dijkstra.
+ *
+ * The returned path is a most probable one. Among equally probable paths it
+ * may pick a different one than {@link PathEngine#path}.
+ *
+ * The graph must be undirected, with both directions of every edge stored.
+ */
+public class ContractionHierarchy
+{
+    private static final int  MAGIC          = 0x58494843; // "CHIX"
+    private static final int  VERSION        = 1;
+    private static final int  HEADER_SIZE    = 8 + 8 + 12;
+
+    // Witness searches give up after settling this many nodes, when ordering
+    // nodes and when confirming the shortcuts of the node being contracted
+    private static final int  ESTIMATE_SETTLE = 5;
+    private static final int  WITNESS_SETTLE  = 200;
+
+    // Stop contracting once the next node would need more shortcuts than this
+    private static final int  CORE_SHORTCUTS = 400;
+
+    private final int      n;
+    private final int[]    rank;
+    private final int      coreRank;    // first rank of the core
+    private final int[]    upOffsets;
+    private final int[]    upTargets;   // sorted within each row
+    private final double[] upCost;
+    private final int[]    upMiddle;    // contracted node a shortcut skips, -1 for an edge
+    private final long     graphChecksum;
+    private final Query    query;
+
+
+    private ContractionHierarchy(int[] rank, int coreRank, int[] upOffsets, int[] upTargets,
+        double[] upCost, int[] upMiddle, long graphChecksum)
+    {
+        this.n = rank.length;
+        this.rank = rank;
+        this.coreRank = coreRank;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upCost = upCost;
+        this.upMiddle = upMiddle;
+        this.graphChecksum = graphChecksum;
+        this.query = new Query();
+    }
+
+
+    /**
+     * Contract every node of a graph, least important first
+     *
+     * @param graph the graph to index
+     * @return the hierarchy
+     * @throws IllegalArgumentException if an edge weight is above 100, which
+     *         would give it a negative cost
+     */
+    static ContractionHierarchy build(Graph graph)
+    {
+        return build(graph, CORE_SHORTCUTS);
+    }
+
+
+    /**
+     * Contract the nodes of a graph until one would need too many shortcuts
+     *
+     * @param graph         the graph to index
+     * @param coreShortcuts the most shortcuts a node may need to be contracted
+     * @return the hierarchy
+     */
+    static ContractionHierarchy build(Graph graph, int coreShortcuts)
+    {
+        return new Builder(graph, coreShortcuts).build();
+    }
+
+
+    /**
+     * @return the number of upward edges and shortcuts stored
+     */
+    int upwardEdges()
+    {
+        return upTargets.length;
+    }
+
+
+    /**
+     * @return the number of upward entries that are shortcuts
+     */
+    int shortcuts()
+    {
+        int count = 0;
+        for (int mid : upMiddle)
+            if (mid >= 0)
+                count++;
+        return count;
+    }
+
+
+    /**
+     * @return the number of nodes left uncontracted in the core
+     */
+    int coreSize()
+    {
+        return n - coreRank;
+    }
+
+
+    /**
+     * @return the bytes taken by the index arrays
+     */
+    long sizeBytes()
+    {
+        return 4L * (rank.length + upOffsets.length + upTargets.length + upMiddle.length)
+            + 8L * upCost.length;
+    }
+
+
+    /**
+     * Find a most probable path. Not safe to call from several threads.
+     *
+     * @param source      the origin node
+     * @param destination the destination node
+     * @return the nodes from source to destination, or an empty list if
+     *         destination cannot be reached
+     */
+    List<Integer> path(int source, int destination)
+    {
+        if (source == destination)
+            return Collections.singletonList(source);
+        return query.run(source, destination);
+    }
+
+
+    // Return the middle of the stored edge between a node and a more important one
+    private int middle(int low, int high)
+    {
+        int i = Arrays.binarySearch(upTargets, upOffsets[low], upOffsets[low + 1], high);
+        return upMiddle[i];
+    }
+
+
+    /**
+     * Scratch space for one upward query at a time, stamped per query like
+     * PathEngine.Search so nothing is cleared between queries.
+     */
+    private class Query
+    {
+        private final Side  forward  = new Side();
+        private final Side  backward = new Side();
+        private final int[] marked   = new int[n];
+        private int[]       stack    = new int[64];
+        private int         mark;
+
+
+        List<Integer> run(int source, int destination)
+        {
+            forward.start(source);
+            backward.start(destination);
+            double best = Double.POSITIVE_INFINITY;
+            int meet = -1;
+            while (true)
+            {
+                boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.minKey() < best;
+                boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.minKey() < best;
+                if (!forwardOpen && !backwardOpen)
+                    break;
+                Side side = forwardOpen && (!backwardOpen
+                    || forward.heap.size() <= backward.heap.size()) ? forward : backward;
+                Side other = side == forward ? backward : forward;
+                int u = side.settle();
+                if (other.seen[u] == other.stamp && side.dist[u] + other.dist[u] < best)
+                {
+                    best = side.dist[u] + other.dist[u];
+                    meet = u;
+                }
+            }
+            if (meet < 0)
+                return new ArrayList<>();
+
+            List<Integer> path = new ArrayList<>();
+            for (int at = meet; at != -1; at = forward.pred[at])
+                path.add(at);
+            Collections.reverse(path);
+            List<Integer> unpacked = new ArrayList<>();
+            unpacked.add(source);
+            for (int i = 1; i < path.size(); i++)
+            {
+                int to = path.get(i);
+                unpack(path.get(i - 1), to, forward.predMiddle[to], unpacked);
+            }
+            for (int at = meet; backward.pred[at] != -1; at = backward.pred[at])
+                unpack(at, backward.pred[at], backward.predMiddle[at], unpacked);
+            return withoutCycles(unpacked);
+        }
+
+
+        /*
+         * Cut out any cycle. Edges of weight 100 cost nothing, so a best path
+         * can tie with itself plus a detour that returns to the same node.
+         */
+        private List<Integer> withoutCycles(List<Integer> path)
+        {
+            if (++mark == Integer.MAX_VALUE)
+            {
+                Arrays.fill(marked, 0);
+                mark = 1;
+            }
+            List<Integer> simple = new ArrayList<>(path.size());
+            for (int v : path)
+            {
+                if (marked[v] == mark)
+                {
+                    while (simple.get(simple.size() - 1) != v)
+                        marked[simple.remove(simple.size() - 1)] = 0;
+                    continue;
+                }
+                marked[v] = mark;
+                simple.add(v);
+            }
+            return simple;
+        }
+
+
+        // Append the vertices after from up to and including to, expanding shortcuts
+        private void unpack(int from, int to, int mid, List<Integer> into)
+        {
+            int top = push(0, from, to, mid);
+            while (top > 0)
+            {
+                top -= 3;
+                int a = stack[top];
+                int b = stack[top + 1];
+                int m = stack[top + 2];
+                if (m < 0)
+                {
+                    into.add(b);
+                    continue;
+                }
+                top = push(top, m, b, middle(m, b));
+                top = push(top, a, m, middle(m, a));
+            }
+        }
+
+
+        private int push(int top, int a, int b, int mid)
+        {
+            if (top + 3 > stack.length)
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top] = a;
+            stack[top + 1] = b;
+            stack[top + 2] = mid;
+            return top + 3;
+        }
+    }
+
+
+    // One direction of an upward query
+    private class Side
+    {
+        private final double[]       dist       = new double[n];
+        private final int[]          pred       = new int[n];
+        private final int[]          predMiddle = new int[n];
+        private final int[]          seen       = new int[n];
+        private final IndexedMinHeap heap       = new IndexedMinHeap(n);
+        private int                  stamp;
+
+
+        void start(int from)
+        {
+            heap.clear();
+            if (++stamp == Integer.MAX_VALUE)
+            {
+                Arrays.fill(seen, 0);
+                stamp = 1;
+            }
+            seen[from] = stamp;
+            dist[from] = 0;
+            pred[from] = -1;
+            predMiddle[from] = -1;
+            heap.push(from, 0);
+        }
+
+
+        /*
+         * Settle the closest queued node, relax its upward edges and return
+         * it. The node is stalled instead, without relaxing, when a more
+         * important neighbor already reached reaches it more cheaply: its best
+         * path then comes down from that neighbor, which the other side covers.
+         */
+        int settle()
+        {
+            int u = heap.pop();
+            double du = dist[u];
+            for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++)
+            {
+                int v = upTargets[i];
+                if (seen[v] == stamp && dist[v] + upCost[i] < du)
+                    return u;
+            }
+            for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++)
+            {
+                int v = upTargets[i];
+                double dv = du + upCost[i];
+                if (seen[v] != stamp || dv < dist[v])
+                {
+                    seen[v] = stamp;
+                    dist[v] = dv;
+                    pred[v] = u;
+                    predMiddle[v] = upMiddle[i];
+                    heap.push(v, dv);
+                }
+            }
+            return u;
+        }
+    }
+
+
+    /**
+     * Contracts the nodes of a graph on growable adjacency lists, choosing
+     * each time the node with the lowest priority: the shortcuts it needs
+     * minus its remaining degree, plus the neighbors already contracted.
+     * Priorities are updated lazily when a node reaches the top of the queue.
+     */
+    private static class Builder
+    {
+        private final Graph          graph;
+        private final int            coreShortcuts;
+        private final int            n;
+        private final int[][]        adj;
+        private final double[][]     adjCost;
+        private final int[][]        adjMiddle;
+        private final int[]          degree;
+        private final int[]          deleted;
+        private final boolean[]      contracted;
+        private final int[]          rank;
+
+        // upward rows, recorded when a node is contracted or left in the core
+        private final int[][]        upTo;
+        private final double[][]     upCostRow;
+        private final int[][]        upMidRow;
+
+        // witness search scratch
+        private final double[]       dist;
+        private final int[]          seen;
+        private final int[]          target;
+        private final double[]       need;
+        private final IndexedMinHeap heap;
+        private int                  stamp;
+
+        // shortcuts found by the last call to shortcuts or unwitnessed
+        private int[]                pairFrom = new int[16];
+        private int[]                pairTo   = new int[16];
+        private double[]             pairCost = new double[16];
+
+
+        Builder(Graph graph, int coreShortcuts)
+        {
+            this.graph = graph;
+            this.coreShortcuts = coreShortcuts;
+            n = graph.nodeCount();
+            adj = new int[n][];
+            adjCost = new double[n][];
+            adjMiddle = new int[n][];
+            degree = new int[n];
+            deleted = new int[n];
+            contracted = new boolean[n];
+            rank = new int[n];
+            upTo = new int[n][];
+            upCostRow = new double[n][];
+            upMidRow = new int[n][];
+            dist = new double[n];
+            seen = new int[n];
+            target = new int[n];
+            need = new double[n];
+            heap = new IndexedMinHeap(n);
+
+            NeighborCursor row = graph.cursor();
+            for (int v = 0; v < n; v++)
+            {
+                row.reset(v);
+                int[] ids = row.ids();
+                adj[v] = new int[Math.max(row.end() - row.start(), 4)];
+                adjCost[v] = new double[adj[v].length];
+                adjMiddle[v] = new int[adj[v].length];
+                for (int i = row.start(), end = row.end(); i < end; i++)
+                {
+                    int w = ids[i];
+                    int weight = row.weight(i);
+                    if (w == v)
+                        continue;
+                    if (weight > 100)
+                        throw new IllegalArgumentException("Edge weight " + weight
+                            + " above 100 has a negative cost");
+                    double prob = weight / 100.0;
+                    int d = degree[v];
+                    if (d > 0 && adj[v][d - 1] == w)
+                    {
+                        // parallel edges are sorted together; keep the cheapest
+                        adjCost[v][d - 1] = Math.min(adjCost[v][d - 1], -Math.log(prob));
+                        continue;
+                    }
+                    adj[v][degree[v]] = w;
+                    adjCost[v][degree[v]] = -Math.log(prob);
+                    adjMiddle[v][degree[v]] = -1;
+                    degree[v]++;
+                }
+            }
+        }
+
+
+        ContractionHierarchy build()
+        {
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++)
+                order.push(v, priority(v, shortcuts(v)));
+
+            int next = 0;
+            while (!order.isEmpty())
+            {
+                int v = order.pop();
+                int estimate = shortcuts(v);
+                double p = priority(v, estimate);
+                if (!order.isEmpty() && p > order.minKey())
+                {
+                    order.push(v, p);
+                    continue;
+                }
+                int added = unwitnessed(v, estimate, WITNESS_SETTLE);
+                if (added > coreShortcuts)
+                    break;
+                contract(v, added);
+                rank[v] = next++;
+            }
+
+            int coreRank = next;
+            for (int v = 0; v < n; v++)
+            {
+                if (!contracted[v])
+                {
+                    rank[v] = next++;
+                    record(v);
+                }
+            }
+            return assemble(coreRank);
+        }
+
+
+        // Shortcuts v needs minus its degree, plus its contracted neighbors
+        private double priority(int v, int shortcuts)
+        {
+            return shortcuts - degree[v] + deleted[v];
+        }
+
+
+        /*
+         * Estimate the shortcuts contracting v would need, leaving them in the
+         * pair arrays, and return how many there are
+         */
+        private int shortcuts(int v)
+        {
+            int count = 0;
+            int d = degree[v];
+            for (int i = 0; i < d - 1; i++)
+            {
+                for (int j = i + 1; j < d; j++)
+                {
+                    if (count == pairFrom.length)
+                    {
+                        pairFrom = Arrays.copyOf(pairFrom, count * 2);
+                        pairTo = Arrays.copyOf(pairTo, count * 2);
+                        pairCost = Arrays.copyOf(pairCost, count * 2);
+                    }
+                    pairFrom[count] = adj[v][i];
+                    pairTo[count] = adj[v][j];
+                    pairCost[count] = adjCost[v][i] + adjCost[v][j];
+                    count++;
+                }
+            }
+            return unwitnessed(v, count, ESTIMATE_SETTLE);
+        }
+
+
+        /*
+         * Drop from the first count pairs those with a witness found within
+         * settleLimit nodes, and return how many are left. A longer search
+         * settles a superset of the nodes, so it only ever drops more pairs
+         * and can be run on what a shorter one left.
+         */
+        private int unwitnessed(int v, int count, int settleLimit)
+        {
+            int kept = 0;
+            int start = 0;
+            while (start < count)
+            {
+                int end = start + 1;
+                while (end < count && pairFrom[end] == pairFrom[start])
+                    end++;
+                witness(pairFrom[start], v, start, end, settleLimit);
+                for (int k = start; k < end; k++)
+                {
+                    if (target[pairTo[k]] == stamp)
+                    {
+                        pairFrom[kept] = pairFrom[k];
+                        pairTo[kept] = pairTo[k];
+                        pairCost[kept] = pairCost[k];
+                        kept++;
+                    }
+                }
+                start = end;
+            }
+            return kept;
+        }
+
+
+        /*
+         * Dijkstra from u that avoids v, looking for witnesses to the pairs
+         * from index first up to last, which all start at u. The other end w
+         * of a pair is witnessed, and unmarked as a target, as soon as a path
+         * to it no costlier than u-v-w is found. The search stops once every
+         * target is witnessed, once no node left can lead to a witness, or
+         * after settleLimit nodes. Nodes farther than the costliest target
+         * left are never queued.
+         */
+        private void witness(int u, int v, int first, int last, int settleLimit)
+        {
+            heap.clear();
+            if (++stamp == Integer.MAX_VALUE)
+            {
+                Arrays.fill(seen, 0);
+                Arrays.fill(target, 0);
+                stamp = 1;
+            }
+            for (int k = first; k < last; k++)
+            {
+                target[pairTo[k]] = stamp;
+                need[pairTo[k]] = pairCost[k];
+            }
+            double limit = limit(first, last);
+            int remaining = last - first;
+
+            seen[u] = stamp;
+            dist[u] = 0;
+            heap.push(u, 0);
+            for (int settled = 0; !heap.isEmpty() && settled < settleLimit; settled++)
+            {
+                int x = heap.pop();
+                double dx = dist[x];
+                if (dx > limit)
+                    break;
+                for (int i = 0; i < degree[x]; i++)
+                {
+                    int y = adj[x][i];
+                    if (y == v)
+                        continue;
+                    double dy = dx + adjCost[x][i];
+                    if (dy > limit)
+                        continue;
+                    if (target[y] == stamp && dy <= need[y])
+                    {
+                        target[y] = 0;
+                        if (--remaining == 0)
+                        {
+                            heap.clear();
+                            return;
+                        }
+                        if (need[y] == limit)
+                            limit = limit(first, last);
+                    }
+                    if (seen[y] != stamp || dy < dist[y])
+                    {
+                        seen[y] = stamp;
+                        dist[y] = dy;
+                        heap.push(y, dy);
+                    }
+                }
+            }
+            heap.clear();
+        }
+
+
+        // Largest cost still to be witnessed among the pairs from first up to last
+        private double limit(int first, int last)
+        {
+            double limit = 0;
+            for (int k = first; k < last; k++)
+                if (target[pairTo[k]] == stamp)
+                    limit = Math.max(limit, pairCost[k]);
+            return limit;
+        }
+
+
+        // Contract v with the count shortcuts left in the pair arrays
+        private void contract(int v, int count)
+        {
+            record(v);
+            contracted[v] = true;
+            for (int i = 0; i < degree[v]; i++)
+            {
+                int u = adj[v][i];
+                remove(u, v);
+                deleted[u]++;
+            }
+            for (int k = 0; k < count; k++)
+            {
+                link(pairFrom[k], pairTo[k], pairCost[k], v);
+                link(pairTo[k], pairFrom[k], pairCost[k], v);
+            }
+        }
+
+
+        // Keep v's remaining edges as its upward row
+        private void record(int v)
+        {
+            int d = degree[v];
+            upTo[v] = Arrays.copyOf(adj[v], d);
+            upCostRow[v] = Arrays.copyOf(adjCost[v], d);
+            upMidRow[v] = Arrays.copyOf(adjMiddle[v], d);
+        }
+
+
+        private void remove(int u, int v)
+        {
+            int d = degree[u];
+            for (int i = 0; i < d; i++)
+            {
+                if (adj[u][i] == v)
+                {
+                    adj[u][i] = adj[u][d - 1];
+                    adjCost[u][i] = adjCost[u][d - 1];
+                    adjMiddle[u][i] = adjMiddle[u][d - 1];
+                    degree[u] = d - 1;
+                    return;
+                }
+            }
+        }
+
+
+        // Add the edge u-w skipping mid, or lower the cost of an existing one
+        private void link(int u, int w, double cost, int mid)
+        {
+            int d = degree[u];
+            for (int i = 0; i < d; i++)
+            {
+                if (adj[u][i] == w)
+                {
+                    if (cost < adjCost[u][i])
+                    {
+                        adjCost[u][i] = cost;
+                        adjMiddle[u][i] = mid;
+                    }
+                    return;
+                }
+            }
+            if (d == adj[u].length)
+            {
+                adj[u] = Arrays.copyOf(adj[u], d * 2);
+                adjCost[u] = Arrays.copyOf(adjCost[u], d * 2);
+                adjMiddle[u] = Arrays.copyOf(adjMiddle[u], d * 2);
+            }
+            adj[u][d] = w;
+            adjCost[u][d] = cost;
+            adjMiddle[u][d] = mid;
+            degree[u] = d + 1;
+        }
+
+
+        // Pack the upward rows, sorted by target, into compressed arrays
+        private ContractionHierarchy assemble(int coreRank)
+        {
+            int[] offsets = new int[n + 1];
+            for (int v = 0; v < n; v++)
+                offsets[v + 1] = offsets[v] + upTo[v].length;
+            int[] targets = new int[offsets[n]];
+            double[] cost = new double[offsets[n]];
+            int[] middle = new int[offsets[n]];
+            for (int v = 0; v < n; v++)
+            {
+                int d = upTo[v].length;
+                long[] keys = new long[d];
+                for (int i = 0; i < d; i++)
+                    keys[i] = (long) upTo[v][i] << 32 | i;
+                Arrays.sort(keys);
+                for (int i = 0; i < d; i++)
+                {
+                    int from = (int) keys[i];
+                    targets[offsets[v] + i] = upTo[v][from];
+                    cost[offsets[v] + i] = upCostRow[v][from];
+                    middle[offsets[v] + i] = upMidRow[v][from];
+                }
+                upTo[v] = null;
+                upCostRow[v] = null;
+                upMidRow[v] = null;
+            }
+            return new ContractionHierarchy(rank, coreRank, offsets, targets, cost, middle,
+                checksum(graph));
+        }
+    }
+
+
+    /**
+     * Write the hierarchy. The file is written next to its final location
+     * and moved into place, so readers never see a partial index.
+     *
+     * @param file where to write
+     * @throws IOException if the file cannot be written
+     */
+    void write(Path file) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.putLong(graphChecksum);
+        header.putInt(n).putInt(coreRank).putInt(upTargets.length);
+        header.flip();
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(),
+            absolute.getFileName().toString(), ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+            {
+                GraphSnapshot.writeFully(channel, header);
+                ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                GraphSnapshot.writeInts(channel, buf, rank);
+                GraphSnapshot.writeInts(channel, buf, upOffsets);
+                GraphSnapshot.writeInts(channel, buf, upTargets);
+                GraphSnapshot.writeInts(channel, buf, upMiddle);
+                writeDoubles(channel, buf, upCost);
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * Read a hierarchy if it was built for the given graph
+     *
+     * @param file  the index file
+     * @param graph the graph the caller wants to query
+     * @return the hierarchy, or null if it is missing, built for another
+     *         graph or not an index
+     * @throws IOException if the file cannot be read
+     */
+    static ContractionHierarchy read(Path file, Graph graph) throws IOException
+    {
+        if (!Files.isRegularFile(file))
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                return null;
+            long sum = header.getLong();
+            int nodes = header.getInt();
+            int coreRank = header.getInt();
+            int stored = header.getInt();
+            if (nodes != graph.nodeCount() || stored < 0
+                || channel.size() != HEADER_SIZE + 4L * (2L * nodes + 1 + 2L * stored) + 8L * stored
+                || sum != checksum(graph))
+                return null;
+
+            long pos = HEADER_SIZE;
+            int[] rank = new int[nodes];
+            pos = GraphSnapshot.readInts(channel, pos, rank);
+            int[] offsets = new int[nodes + 1];
+            pos = GraphSnapshot.readInts(channel, pos, offsets);
+            int[] targets = new int[stored];
+            pos = GraphSnapshot.readInts(channel, pos, targets);
+            int[] middle = new int[stored];
+            pos = GraphSnapshot.readInts(channel, pos, middle);
+            double[] cost = new double[stored];
+            readDoubles(channel, pos, cost);
+            return new ContractionHierarchy(rank, coreRank, offsets, targets, cost, middle, sum);
+        }
+    }
+
+
+    // CRC32C of a graph's rows, identifying the graph an index was built for.
+    // The bytes are those of the GraphCSR offsets, targets and weights
+    // arrays, so every backend holding the same rows gets the same value.
+    private static long checksum(Graph graph)
+    {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        int n = graph.nodeCount();
+        int offset = 0;
+        for (int v = 0; v <= n; v++)
+        {
+            checksumInt(crc, buf, offset);
+            if (v < n)
+                offset += graph.degree(v);
+        }
+        NeighborCursor row = graph.cursor();
+        for (int v = 0; v < n; v++)
+        {
+            row.reset(v);
+            int[] ids = row.ids();
+            for (int i = row.start(), end = row.end(); i < end; i++)
+                checksumInt(crc, buf, ids[i]);
+        }
+        for (int v = 0; v < n; v++)
+        {
+            row.reset(v);
+            for (int i = row.start(), end = row.end(); i < end; i++)
+                checksumInt(crc, buf, row.weight(i));
+        }
+        crc.update(buf.flip());
+        return crc.getValue();
+    }
+
+
+    // Add an int to the checksum buffer, feeding the buffer to crc once full
+    private static void checksumInt(CRC32C crc, ByteBuffer buf, int value)
+    {
+        if (!buf.hasRemaining())
+        {
+            crc.update(buf.flip());
+            buf.clear();
+        }
+        buf.putInt(value);
+    }
+
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buf, double[] values)
+        throws IOException
+    {
+        int done = 0;
+        while (done < values.length)
+        {
+            buf.clear();
+            DoubleBuffer doubles = buf.asDoubleBuffer();
+            int count = Math.min(doubles.capacity(), values.length - done);
+            doubles.put(values, done, count);
+            buf.limit(count * 8);
+            GraphSnapshot.writeFully(channel, buf);
+            done += count;
+        }
+    }
+
+
+    private static void readDoubles(FileChannel channel, long pos, double[] values)
+        throws IOException
+    {
+        int done = 0;
+        while (done < values.length)
+        {
+            int count = Math.min(1 << 27, values.length - done);
+            channel.map(FileChannel.MapMode.READ_ONLY, pos, 8L * count)
+                .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(values, done, count);
+            pos += 8L * count;
+            done += count;
+        }
+    }
+}
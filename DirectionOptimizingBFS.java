@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * Level-synchronous breadth-first search that switches between top-down and
+ * bottom-up steps (Beamer et al., "Direction-Optimizing Breadth-First
+ * Search"). A top-down step expands every frontier vertex; a bottom-up step
+ * lets every unvisited vertex look for a parent in the frontier and stop at
+ * the first one found. Bottom-up wins on the middle levels of small-world
+ * graphs, where the frontier covers most of the graph. Both steps find the
+ * same next level, so level counts are identical to a plain BFS.
+ *
+ * The graph must be undirected, with both directions of every edge stored,
+ * since a bottom-up step reads the neighbors of the unvisited side. The
+ * scratch arrays are cleared after every search, so one searcher serves
+ * any number of searches, on one thread at a time.
+ */
+public class DirectionOptimizingBFS
+{
+    // Go bottom-up once the frontier's edges exceed 1/ALPHA of the unexplored edges
+    private static final int ALPHA = 14;
+
+    // Go back top-down once the frontier holds fewer than 1/BETA of the vertices
+    private static final int BETA  = 24;
+
+    private Graph                graph;
+    private NeighborCursor       neighbors;
+    private final int[]          degree;
+    private final int            n;
+    private final long[]         visited;
+    private long[]               frontierBits;
+    private long[]               nextBits;
+    private int[]                queue;
+    private int[]                nextQueue;
+    private long                 edgeChecks;
+
+
+    /**
+     * @param graph  the graph to search
+     * @param degree an estimate of the degree of every vertex, used only to
+     *               choose the direction of each step
+     */
+    DirectionOptimizingBFS(Graph graph, int[] degree)
+    {
+        this.graph = graph;
+        this.neighbors = graph.cursor();
+        this.degree = degree;
+        this.n = graph.nodeCount();
+        int words = (n + 63) >>> 6;
+        visited = new long[words];
+        frontierBits = new long[words];
+        nextBits = new long[words];
+        queue = new int[n];
+        nextQueue = new int[n];
+    }
+
+
+    /**
+     * Search another graph on the same vertices from now on, such as the
+     * graph with some vertices masked out
+     *
+     * @param graph the graph to search
+     */
+    void use(Graph graph)
+    {
+        if (graph != this.graph)
+        {
+            this.graph = graph;
+            this.neighbors = graph.cursor();
+        }
+    }
+
+
+    /**
+     * @return the number of neighbor entries read by the last search
+     */
+    long edgeChecks()
+    {
+        return edgeChecks;
+    }
+
+
+    /**
+     * Count the levels needed to reach a number of vertices from a seed
+     *
+     * @param seed   the vertex the search starts from; it counts as reached
+     * @param target the number of vertices to reach
+     * @return the number of levels after which at least target vertices are
+     *         reached, or -1 if the seed's component is smaller than target
+     */
+    int levelsToReach(int seed, int target)
+    {
+        edgeChecks = 0;
+        visited[seed >>> 6] |= 1L << seed;
+        queue[0] = seed;
+        int frontierSize = 1;
+        boolean bottomUp = false;
+        long frontierEdges = degree[seed];
+        long unexploredEdges = -degree[seed];
+        for (int v = 0; v < n; v++)
+            unexploredEdges += degree[v];
+
+        int visitedCount = 1;
+        int genCount = 0;
+        while (frontierSize > 0 && visitedCount < target)
+        {
+            genCount++;
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA)
+            {
+                bottomUp = true;
+                for (int i = 0; i < frontierSize; i++)
+                    frontierBits[queue[i] >>> 6] |= 1L << queue[i];
+            }
+            else if (bottomUp && frontierSize < n / BETA)
+            {
+                bottomUp = false;
+                frontierSize = drain(frontierBits, queue);
+            }
+
+            int found = 0;
+            frontierEdges = 0;
+            if (bottomUp)
+            {
+                for (int word = 0; word < visited.length; word++)
+                {
+                    long unvisited = ~visited[word];
+                    while (unvisited != 0)
+                    {
+                        int v = (word << 6) + Long.numberOfTrailingZeros(unvisited);
+                        unvisited &= unvisited - 1;
+                        if (v >= n)
+                            break;
+                        neighbors.reset(v);
+                        int[] ids = neighbors.ids();
+                        for (int k = neighbors.start(), end = neighbors.end(); k < end; k++)
+                        {
+                            int w = ids[k];
+                            edgeChecks++;
+                            if ((frontierBits[w >>> 6] & (1L << w)) != 0)
+                            {
+                                nextBits[word] |= 1L << v;
+                                found++;
+                                frontierEdges += degree[v];
+                                break;
+                            }
+                        }
+                    }
+                }
+                // mark the new level only after the scan, so it cannot act as parents
+                for (int word = 0; word < visited.length; word++)
+                {
+                    visited[word] |= nextBits[word];
+                    frontierBits[word] = 0;
+                }
+                long[] swap = frontierBits;
+                frontierBits = nextBits;
+                nextBits = swap;
+            }
+            else
+            {
+                for (int i = 0; i < frontierSize; i++)
+                {
+                    neighbors.reset(queue[i]);
+                    int[] ids = neighbors.ids();
+                    for (int k = neighbors.start(), end = neighbors.end(); k < end; k++)
+                    {
+                        int w = ids[k];
+                        edgeChecks++;
+                        if ((visited[w >>> 6] & (1L << w)) == 0)
+                        {
+                            visited[w >>> 6] |= 1L << w;
+                            nextQueue[found++] = w;
+                            frontierEdges += degree[w];
+                        }
+                    }
+                }
+                int[] swap = queue;
+                queue = nextQueue;
+                nextQueue = swap;
+            }
+            frontierSize = found;
+            visitedCount += found;
+            unexploredEdges -= frontierEdges;
+            if (visitedCount >= target)
+                break;
+        }
+        reset();
+        return visitedCount >= target ? genCount : -1;
+    }
+
+
+    // Move the vertices of a bitset frontier into a queue, clearing the bitset
+    private int drain(long[] bits, int[] into)
+    {
+        int size = 0;
+        for (int word = 0; word < bits.length; word++)
+        {
+            long set = bits[word];
+            while (set != 0)
+            {
+                into[size++] = (word << 6) + Long.numberOfTrailingZeros(set);
+                set &= set - 1;
+            }
+            bits[word] = 0;
+        }
+        return size;
+    }
+
+
+    // Leave the scratch arrays ready for the next search
+    private void reset()
+    {
+        Arrays.fill(visited, 0);
+        Arrays.fill(frontierBits, 0);
+        Arrays.fill(nextBits, 0);
+    }
+}
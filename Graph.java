@@ -25,6 +25,18 @@ public interface Graph
     int edgeCount();
 
 
+    /**
+     * Like edgeCount, for graphs that may hold more than Integer.MAX_VALUE
+     * edges
+     * 
+     * @return the current number of edges
+     */
+    default long longEdgeCount()
+    {
+        return edgeCount();
+    }
+
+
     /**
      * Get the value of node with index v
      * 
@@ -91,4 +103,22 @@ public interface Graph
      */
     int[] neighbors(int v);
 
+
+    /**
+     * Returns the number of neighbors of v, without listing them
+     * 
+     * @param v - the node
+     * @return the number of neighbors
+     */
+    int degree(int v);
+
+
+    /**
+     * Returns a new cursor over the neighbors of any vertex. Reuse it for
+     * every vertex of a scan instead of calling neighbors, which allocates.
+     * 
+     * @return the cursor, not yet on any vertex
+     */
+    NeighborCursor cursor();
+
 }
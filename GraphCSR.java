@@ -0,0 +1,400 @@
+import java.util.Arrays;
+
+/**
+ * Read-only graph stored in compressed sparse row form. The neighbors of
+ * vertex v are targets[offsets[v]] .. targets[offsets[v + 1] - 1], kept in
+ * increasing order, with the matching edge weights in the parallel weights
+ * array. Built once from a loaded graph; it cannot be modified afterwards.
+ * Rows of at least HubTable.HUB_DEGREE entries also get a table from
+ * neighbor to position, so their edges are found without a search.
+ */
+public class GraphCSR implements Graph
+{
+    private int[]    offsets;
+    private int[]    targets;
+    private int[]    weights;
+    private int[][]  hubs; // position table of each long row, null for short ones
+    private Object[] nodeValues;
+    private int      numEdge;
+
+
+    /**
+     * Empty no argument constructor
+     */
+    GraphCSR()
+    {
+        // No real constructor needed
+    }
+
+
+    /**
+     * Build a compressed copy of another graph. The edge count is taken from
+     * the source graph so that averages computed on either graph agree.
+     *
+     * @param source the graph to copy
+     */
+    GraphCSR(Graph source)
+    {
+        int n = source.nodeCount();
+        offsets = new int[n + 1];
+        for (int v = 0; v < n; v++)
+            offsets[v + 1] = offsets[v] + source.degree(v);
+        targets = new int[offsets[n]];
+        weights = new int[offsets[n]];
+        NeighborCursor row = source.cursor();
+        for (int v = 0; v < n; v++)
+        {
+            int pos = offsets[v];
+            row.reset(v);
+            int[] ids = row.ids();
+            for (int i = row.start(), end = row.end(); i < end; i++)
+            {
+                targets[pos] = ids[i];
+                weights[pos] = row.weight(i);
+                pos++;
+            }
+        }
+        nodeValues = new Object[n];
+        for (int v = 0; v < n; v++)
+            nodeValues[v] = source.getValue(v);
+        numEdge = source.edgeCount();
+        indexHubs();
+    }
+
+
+    /**
+     * Wrap arrays that are already in compressed layout
+     *
+     * @param offsets row starts, one per vertex plus the end of the last row
+     * @param targets the sorted neighbors of every row
+     * @param weights the weight of every entry in targets
+     * @param numEdge the edge count to report
+     */
+    GraphCSR(int[] offsets, int[] targets, int[] weights, int numEdge)
+    {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.numEdge = numEdge;
+        this.nodeValues = new Object[offsets.length - 1];
+        indexHubs();
+    }
+
+
+    // Give every long row its position table
+    private void indexHubs()
+    {
+        int n = offsets.length - 1;
+        hubs = new int[n][];
+        for (int v = 0; v < n; v++)
+        {
+            int d = offsets[v + 1] - offsets[v];
+            if (d < HubTable.HUB_DEGREE)
+                continue;
+            int[] table = HubTable.create(d);
+            for (int i = 0; i < d; i++)
+                table = HubTable.put(table, targets[offsets[v] + i], offsets[v] + i, i + 1);
+            hubs[v] = table;
+        }
+    }
+
+
+    // Initialize the graph with n vertices and no edges
+    public void init(int n)
+    {
+        offsets = new int[n + 1];
+        targets = new int[0];
+        weights = new int[0];
+        hubs = new int[n][];
+        nodeValues = new Object[n];
+        numEdge = 0;
+    }
+
+
+    // Return the number of vertices
+    public int nodeCount()
+    {
+        return nodeValues.length;
+    }
+
+
+    // Return the current number of edges
+    public int edgeCount()
+    {
+        return numEdge;
+    }
+
+
+    // Get the value of node with index v
+    public Object getValue(int v)
+    {
+        return nodeValues[v];
+    }
+
+
+    // Set the value of node with index v
+    public void setValue(int v, Object val)
+    {
+        nodeValues[v] = val;
+    }
+
+
+    // Row start positions, indexed by vertex, with the total at the end
+    int[] offsets()
+    {
+        return offsets;
+    }
+
+
+    // Neighbor ids of all rows, back to back
+    int[] targets()
+    {
+        return targets;
+    }
+
+
+    // Edge weights parallel to targets()
+    int[] weights()
+    {
+        return weights;
+    }
+
+
+    // The compressed layout is fixed once built
+    public void addEdge(int v, int w, int wgt)
+    {
+        throw new UnsupportedOperationException("GraphCSR is read-only");
+    }
+
+
+    // Return the position of w in v's row, or -1 if there is no (v,w) edge
+    private int find(int v, int w)
+    {
+        if (hubs[v] != null)
+        {
+            int pos = HubTable.get(hubs[v], w);
+            return pos == HubTable.MISSING ? -1 : pos;
+        }
+        int pos = Arrays.binarySearch(targets, offsets[v], offsets[v + 1], w);
+        return pos < 0 ? -1 : pos;
+    }
+
+
+    // Get the weight value for an edge
+    public int weight(int v, int w)
+    {
+        int pos = find(v, w);
+        return pos < 0 ? 0 : weights[pos];
+    }
+
+
+    // The compressed layout is fixed once built
+    public void removeEdge(int v, int w)
+    {
+        throw new UnsupportedOperationException("GraphCSR is read-only");
+    }
+
+
+    // Returns true iff the graph has the edge
+    public boolean hasEdge(int v, int w)
+    {
+        return find(v, w) >= 0;
+    }
+
+
+    // Returns an array containing the indices of the neighbors of v
+    public int[] neighbors(int v)
+    {
+        return Arrays.copyOfRange(targets, offsets[v], offsets[v + 1]);
+    }
+
+
+    // Return the number of neighbors of v
+    public int degree(int v)
+    {
+        return offsets[v + 1] - offsets[v];
+    }
+
+
+    // Returns a cursor that walks the rows in place
+    public NeighborCursor cursor()
+    {
+        return new RowCursor();
+    }
+
+
+    private class RowCursor implements NeighborCursor
+    {
+        private int start;
+        private int end;
+
+
+        public void reset(int v)
+        {
+            start = offsets[v];
+            end = offsets[v + 1];
+        }
+
+
+        public int[] ids()
+        {
+            return targets;
+        }
+
+
+        public int start()
+        {
+            return start;
+        }
+
+
+        public int end()
+        {
+            return end;
+        }
+
+
+        public int weight(int i)
+        {
+            return weights[i];
+        }
+    }
+
+
+    /**
+     * Sort the rows of an edge list that is already grouped by source, in
+     * insertion order within each row, by target. Entries with weight 0 are
+     * dropped and a repeated target keeps the weight inserted last. Rows are
+     * compacted in place to the front of rowTo and rowWeight.
+     *
+     * @param rowStart  the start of every row, plus the end of the last one
+     * @param rowTo     the targets of every row
+     * @param rowWeight the weights parallel to rowTo
+     * @param newStart  receives the start of every compacted row, plus the
+     *                  end of the last one
+     * @return the number of entries left
+     */
+    static int compactRows(int[] rowStart, int[] rowTo, int[] rowWeight, int[] newStart)
+    {
+        int rows = rowStart.length - 1;
+        int write = 0;
+        long[] keys = new long[0];
+        int[] inserted = new int[0];
+        for (int v = 0; v < rows; v++)
+        {
+            int start = rowStart[v];
+            int len = rowStart[v + 1] - start;
+            newStart[v] = write;
+            if (keys.length < len)
+            {
+                keys = new long[len];
+                inserted = new int[len];
+            }
+            // the row is compacted in place, so keep its weights aside
+            int kept = 0;
+            for (int i = 0; i < len; i++)
+            {
+                inserted[i] = rowWeight[start + i];
+                if (inserted[i] != 0)
+                    keys[kept++] = ((long) rowTo[start + i] << 32) | i;
+            }
+            Arrays.sort(keys, 0, kept);
+            for (int i = 0; i < kept; i++)
+            {
+                int w = (int) (keys[i] >>> 32);
+                int wgt = inserted[(int) keys[i]];
+                if (write > newStart[v] && rowTo[write - 1] == w)
+                    rowWeight[write - 1] = wgt; // later insertion wins
+                else
+                {
+                    rowTo[write] = w;
+                    rowWeight[write] = wgt;
+                    write++;
+                }
+            }
+        }
+        newStart[rows] = write;
+        return write;
+    }
+
+
+    /**
+     * Collects edges in insertion order into primitive buffers and lays them
+     * out as a GraphCSR in one pass. Inserting an edge that already exists
+     * replaces its weight, and every insertion counts towards the edge count,
+     * the same way GraphL.addEdge behaves.
+     */
+    static class Builder
+    {
+        private final int n;
+        private int[]     from   = new int[16];
+        private int[]     to     = new int[16];
+        private int[]     weight = new int[16];
+        private int       size;
+
+
+        /**
+         * @param n the number of vertices
+         */
+        Builder(int n)
+        {
+            this.n = n;
+        }
+
+
+        // Adds a new edge from node v to node w with weight wgt
+        void addEdge(int v, int w, int wgt)
+        {
+            if (wgt == 0)
+                return; // Can't store weight of 0
+            if (v < 0 || v >= n || w < 0 || w >= n)
+                throw new ArrayIndexOutOfBoundsException("Edge (" + v + "," + w
+                    + ") outside " + n + " vertices");
+            if (size == from.length)
+            {
+                int grown = Math.max(16, (int) Math.min(Integer.MAX_VALUE - 8,
+                    from.length * 3L / 2));
+                from = Arrays.copyOf(from, grown);
+                to = Arrays.copyOf(to, grown);
+                weight = Arrays.copyOf(weight, grown);
+            }
+            from[size] = v;
+            to[size] = w;
+            weight[size] = wgt;
+            size++;
+        }
+
+
+        // Sort the buffered edges by source and target and drop repeats
+        GraphCSR build()
+        {
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < size; i++)
+                offsets[from[i] + 1]++;
+            for (int v = 0; v < n; v++)
+                offsets[v + 1] += offsets[v];
+
+            // stable counting sort by source keeps insertion order in a row
+            int[] next = Arrays.copyOf(offsets, n);
+            int[] rowTo = new int[size];
+            int[] rowWeight = new int[size];
+            for (int i = 0; i < size; i++)
+            {
+                int slot = next[from[i]]++;
+                rowTo[slot] = to[i];
+                rowWeight[slot] = weight[i];
+            }
+            int numEdge = size;
+            from = to = weight = null;
+
+            int[] distinct = new int[n + 1];
+            int write = compactRows(offsets, rowTo, rowWeight, distinct);
+            if (write < rowTo.length)
+            {
+                rowTo = Arrays.copyOf(rowTo, write);
+                rowWeight = Arrays.copyOf(rowWeight, write);
+            }
+            return new GraphCSR(distinct, rowTo, rowWeight, numEdge);
+        }
+    }
+}
@@ -1,16 +1,23 @@
+import java.util.Arrays;
 
 /**
- * @author OpenDSA
+ * Adjacency lists kept as sorted int arrays, one per vertex, with the
+ * weights in parallel arrays. An edge is found by binary search in its
+ * row, or in constant time once the row reaches HubTable.HUB_DEGREE and
+ * gets a table of its weights.
  *
+ * @author OpenDSA
  */
 public class GraphL implements Graph {
 
-    private Edge[]   nodeArray;
+    private int[][]  targets; // sorted neighbors of v in targets[v][0 .. degree[v] - 1]
+    private int[][]  weights; // parallel to targets
+    private int[]    degree;
+    private int[][]  hubs;    // weight table of each long row, null for short ones
     private Object[] nodeValues;
     private int      numEdge;
 
 
-    
     /**
      * Empty no argument constructor
      */
@@ -23,10 +30,10 @@ public class GraphL implements Graph {
     // Initialize the graph with n vertices
     public void init(int n)
     {
-        nodeArray = new Edge[n];
-        // List headers;
-        for (int i = 0; i < n; i++)
-            nodeArray[i] = new Edge(-1, -1, null, null);
+        targets = new int[n][0];
+        weights = new int[n][0];
+        degree = new int[n];
+        hubs = new int[n][];
         nodeValues = new Object[n];
         numEdge = 0;
     }
@@ -35,7 +42,7 @@ public class GraphL implements Graph {
     // Return the number of vertices
     public int nodeCount()
     {
-        return nodeArray.length;
+        return targets.length;
     }
 
 
@@ -60,14 +67,10 @@ public class GraphL implements Graph {
     }
 
 
-    // Return the link in v's neighbor list that preceeds the
-    // one with w (or where it would be)
-    private Edge find(int v, int w)
+    // Return the position of w in v's row, or -(insertion point) - 1
+    private int find(int v, int w)
     {
-        Edge curr = nodeArray[v];
-        while ((curr.next != null) && (curr.next.vertex < w))
-            curr = curr.next;
-        return curr;
+        return Arrays.binarySearch(targets[v], 0, degree[v], w);
     }
 
 
@@ -76,42 +79,65 @@ public class GraphL implements Graph {
     {
         if (wgt == 0)
             return; // Can't store weight of 0
-        Edge curr = find(v, w);
-        if ((curr.next != null) && (curr.next.vertex == w))
-            curr.next.weight = wgt;
-        else
+        int pos = find(v, w);
+        if (pos < 0)
         {
-            curr.next = new Edge(w, wgt, curr, curr.next);
-            if (curr.next.next != null)
-                curr.next.next.prev = curr.next;
+            pos = -pos - 1;
+            int d = degree[v];
+            if (d == targets[v].length)
+            {
+                targets[v] = Arrays.copyOf(targets[v], Math.max(4, 2 * d));
+                weights[v] = Arrays.copyOf(weights[v], targets[v].length);
+            }
+            System.arraycopy(targets[v], pos, targets[v], pos + 1, d - pos);
+            System.arraycopy(weights[v], pos, weights[v], pos + 1, d - pos);
+            targets[v][pos] = w;
+            degree[v] = d + 1;
         }
+        weights[v][pos] = wgt;
+        if (hubs[v] != null)
+            hubs[v] = HubTable.put(hubs[v], w, wgt, degree[v]);
+        else if (degree[v] >= HubTable.HUB_DEGREE)
+            hubs[v] = hubTable(v);
         numEdge++;
     }
 
 
+    // Weight table of v's whole row
+    private int[] hubTable(int v)
+    {
+        int[] table = HubTable.create(degree[v]);
+        for (int i = 0; i < degree[v]; i++)
+            table = HubTable.put(table, targets[v][i], weights[v][i], i + 1);
+        return table;
+    }
+
+
     // Get the weight value for an edge
     public int weight(int v, int w)
     {
-        Edge curr = find(v, w);
-        if ((curr.next == null) || (curr.next.vertex != w))
-            return 0;
-        else
-            return curr.next.weight;
+        if (hubs[v] != null)
+        {
+            int wgt = HubTable.get(hubs[v], w);
+            return wgt == HubTable.MISSING ? 0 : wgt;
+        }
+        int pos = find(v, w);
+        return pos < 0 ? 0 : weights[v][pos];
     }
 
 
     // Removes the edge from the graph.
     public void removeEdge(int v, int w)
     {
-        Edge curr = find(v, w);
-        if ((curr.next == null) || curr.next.vertex != w)
+        int pos = find(v, w);
+        if (pos < 0)
             return;
-        else
-        {
-            curr.next = curr.next.next;
-            if (curr.next != null)
-                curr.next.prev = curr;
-        }
+        int d = degree[v] - 1;
+        System.arraycopy(targets[v], pos + 1, targets[v], pos, d - pos);
+        System.arraycopy(weights[v], pos + 1, weights[v], pos, d - pos);
+        degree[v] = d;
+        if (hubs[v] != null)
+            HubTable.remove(hubs[v], w);
         numEdge--;
     }
 
@@ -126,29 +152,60 @@ public class GraphL implements Graph {
     // Returns an array containing the indicies of the neighbors of v
     public int[] neighbors(int v)
     {
-        int cnt = 0;
-        Edge curr;
-        for (curr = nodeArray[v].next; curr != null; curr = curr.next)
-            cnt++;
-        int[] temp = new int[cnt];
-        cnt = 0;
-        for (curr = nodeArray[v].next; curr != null; curr = curr.next)
-            temp[cnt++] = curr.vertex;
-        return temp;
+        return Arrays.copyOf(targets[v], degree[v]);
+    }
+
+
+    // Return the number of neighbors of v
+    public int degree(int v)
+    {
+        return degree[v];
+    }
+
+
+    // Returns a cursor that walks the rows in place
+    public NeighborCursor cursor()
+    {
+        return new RowCursor();
     }
 
-    private class Edge { // Doubly linked list node
-        int  vertex, weight;
-        Edge prev;
-        Edge next;
+
+    private class RowCursor implements NeighborCursor
+    {
+        private int[] row = new int[0];
+        private int[] rowWeights = new int[0];
+        private int   end;
+
+
+        public void reset(int v)
+        {
+            row = targets[v];
+            rowWeights = weights[v];
+            end = degree[v];
+        }
+
+
+        public int[] ids()
+        {
+            return row;
+        }
+
+
+        public int start()
+        {
+            return 0;
+        }
+
+
+        public int end()
+        {
+            return end;
+        }
 
 
-        Edge(int v, int w, Edge p, Edge n)
+        public int weight(int i)
         {
-            vertex = v;
-            weight = w;
-            prev = p;
-            next = n;
+            return rowWeights[i];
         }
     }
 }
@@ -1,16 +1,29 @@
+import java.util.Arrays;
 
 /**
- * @author OpenDSA
+ * Adjacency matrix packed one bit per entry into a long[] row per vertex,
+ * n * n / 8 bytes instead of n * n ints. Only the edges that exist have a
+ * weight: the weights of row v are kept in column order, and the weight of
+ * (v,w) is found by counting the bits of row v before w, helped by a
+ * running count at the start of every RANK_WORDS words. In all the matrix
+ * takes about n * n / 8 + n * n / 128 bytes plus 4 bytes per edge.
  *
+ * @author OpenDSA
  */
 public class GraphM implements Graph
 {
-    private int[][]  matrix;
+    // Words of a row covered by one running count
+    private static final int RANK_SHIFT = 3;
+    private static final int RANK_WORDS = 1 << RANK_SHIFT;
+
+    private long[][] rows;
+    private int[][]  ranks;   // bits set in row v before word i * RANK_WORDS
+    private int[][]  weights; // weights of row v, in column order
+    private int[]    degree;
     private Object[] nodeValues;
     private int      numEdge;
 
 
-    
     /**
      * Empty no argument constructor
      */
@@ -23,7 +36,11 @@ public class GraphM implements Graph
     // Initialize the graph with n vertices
     public void init(int n)
     {
-        matrix = new int[n][n];
+        int words = (n + 63) >>> 6;
+        rows = new long[n][words];
+        ranks = new int[n][(words + RANK_WORDS - 1) >>> RANK_SHIFT];
+        weights = new int[n][0];
+        degree = new int[n];
         nodeValues = new Object[n];
         numEdge = 0;
     }
@@ -63,51 +80,157 @@ public class GraphM implements Graph
     {
         if (wgt == 0)
             return; // Can't store weight of 0
-        if (matrix[v][w] == 0)
-            numEdge++;
-        matrix[v][w] = wgt;
+        int pos = position(v, w);
+        if (hasEdge(v, w))
+        {
+            weights[v][pos] = wgt;
+            return;
+        }
+        int[] row = weights[v];
+        if (degree[v] == row.length)
+            weights[v] = row = Arrays.copyOf(row, Math.max(4, 2 * row.length));
+        System.arraycopy(row, pos, row, pos + 1, degree[v] - pos);
+        row[pos] = wgt;
+        degree[v]++;
+        rows[v][w >>> 6] |= 1L << w;
+        int[] rank = ranks[v];
+        for (int i = (w >>> 6 >>> RANK_SHIFT) + 1; i < rank.length; i++)
+            rank[i]++;
+        numEdge++;
     }
 
 
     // Get the weight value for an edge
     public int weight(int v, int w)
     {
-        return matrix[v][w];
+        return hasEdge(v, w) ? weights[v][position(v, w)] : 0;
     }
 
 
     // Removes the edge from the graph.
     public void removeEdge(int v, int w)
     {
-        if (matrix[v][w] != 0)
-        {
-            matrix[v][w] = 0;
-            numEdge--;
-        }
+        if (!hasEdge(v, w))
+            return;
+        int pos = position(v, w);
+        int[] row = weights[v];
+        System.arraycopy(row, pos + 1, row, pos, degree[v] - pos - 1);
+        degree[v]--;
+        rows[v][w >>> 6] &= ~(1L << w);
+        int[] rank = ranks[v];
+        for (int i = (w >>> 6 >>> RANK_SHIFT) + 1; i < rank.length; i++)
+            rank[i]--;
+        numEdge--;
     }
 
 
     // Returns true iff the graph has the edge
     public boolean hasEdge(int v, int w)
     {
-        return matrix[v][w] != 0;
+        return (rows[v][w >>> 6] & (1L << w)) != 0;
     }
 
 
     // Returns an array containing the indicies of the neighbors of v
     public int[] neighbors(int v)
     {
-        int i;
+        long[] row = rows[v];
+        int[] temp = new int[degree[v]];
         int count = 0;
-        int[] temp;
-
-        for (i = 0; i < nodeValues.length; i++)
-            if (matrix[v][i] != 0)
-                count++;
-        temp = new int[count];
-        for (i = 0, count = 0; i < nodeValues.length; i++)
-            if (matrix[v][i] != 0)
-                temp[count++] = i;
+        for (int i = 0; i < row.length; i++)
+            for (long word = row[i]; word != 0; word &= word - 1)
+                temp[count++] = (i << 6) + Long.numberOfTrailingZeros(word);
         return temp;
     }
+
+
+    // Return the number of neighbors of v
+    public int degree(int v)
+    {
+        return degree[v];
+    }
+
+
+    // Returns a cursor that walks the set bits of a row
+    public NeighborCursor cursor()
+    {
+        return new RowCursor();
+    }
+
+
+    // Decodes each row into a buffer; weights are already in the same order
+    private class RowCursor implements NeighborCursor
+    {
+        private int[] buffer = new int[0];
+        private int[] rowWeights = new int[0];
+        private int   end;
+
+
+        public void reset(int v)
+        {
+            if (buffer.length < degree[v])
+                buffer = new int[Math.max(degree[v], 2 * buffer.length)];
+            long[] row = rows[v];
+            end = 0;
+            for (int i = 0; i < row.length; i++)
+                for (long word = row[i]; word != 0; word &= word - 1)
+                    buffer[end++] = (i << 6) + Long.numberOfTrailingZeros(word);
+            rowWeights = weights[v];
+        }
+
+
+        public int[] ids()
+        {
+            return buffer;
+        }
+
+
+        public int start()
+        {
+            return 0;
+        }
+
+
+        public int end()
+        {
+            return end;
+        }
+
+
+        public int weight(int i)
+        {
+            return rowWeights[i];
+        }
+    }
+
+
+    /**
+     * Count the vertices that are neighbors of both v and w, by ANDing
+     * their rows
+     *
+     * @param v - a node
+     * @param w - another node
+     * @return the number of x with edges (v,x) and (w,x)
+     */
+    int commonNeighbors(int v, int w)
+    {
+        long[] a = rows[v];
+        long[] b = rows[w];
+        int count = 0;
+        for (int i = 0; i < a.length; i++)
+            count += Long.bitCount(a[i] & b[i]);
+        return count;
+    }
+
+
+    // Index in weights[v] of the edge (v,w), or where it would go
+    private int position(int v, int w)
+    {
+        long[] row = rows[v];
+        int word = w >>> 6;
+        int pos = ranks[v][word >>> RANK_SHIFT];
+        for (int i = word & -RANK_WORDS; i < word; i++)
+            pos += Long.bitCount(row[i]);
+        return pos + Long.bitCount(row[word] & ((1L << w) - 1));
+    }
 }
@@ -0,0 +1,505 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only graph in the same compressed sparse row layout as GraphCSR,
+ * whose offsets, targets and weights live outside the Java heap in a memory
+ * mapped file. The heap holds only the buffers that map the file, so the
+ * graph may be larger than the heap, and garbage collections neither scan
+ * nor copy its edges. The operating system pages rows in as they are read.
+ *
+ * A file written by write can be opened again by later runs. copyOf maps a
+ * temporary file that is deleted as soon as it is mapped. The mapping is
+ * released once the graph is no longer reachable.
+ *
+ * <pre>
+ * int    magic, version, node count, unused
+ * long   edge count, stored entries
+ * long[] offsets (node count + 1)
+ * int[]  targets, weights (stored entries each)
+ * </pre>
+ *
+ * All values are little-endian. Offsets are longs so that a graph may hold
+ * more than 2^31 entries.
+ */
+public class GraphOffHeap implements Graph
+{
+    private static final int MAGIC       = 0x50484F47; // "GOHP"
+    private static final int VERSION     = 1;
+    static final int         HEADER_SIZE = 16 + 16;
+
+    // Arrays are mapped 2^CHUNK_SHIFT values at a time
+    static final int         CHUNK_SHIFT = 27;
+
+    private final int          n;
+    private final long         numEdge;
+    private final int          shift;
+    private final long         mask;
+    private final LongBuffer[] offsets;
+    private final IntBuffer[]  targets;
+    private final IntBuffer[]  weights;
+    private Object[]           nodeValues; // allocated by the first setValue
+
+
+    private GraphOffHeap(int n, long numEdge, int shift, LongBuffer[] offsets,
+        IntBuffer[] targets, IntBuffer[] weights)
+    {
+        this.n = n;
+        this.numEdge = numEdge;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+
+    /**
+     * Copy a graph off the heap, into a temporary file that is removed once
+     * mapped. Node values are copied too.
+     *
+     * @param source the graph to copy
+     * @return the copy
+     * @throws IOException if the temporary file cannot be written
+     */
+    static GraphOffHeap copyOf(Graph source) throws IOException
+    {
+        Path file = Files.createTempFile("graph", ".offheap");
+        try
+        {
+            write(source, file);
+            GraphOffHeap graph = open(file);
+            for (int v = 0; v < graph.n; v++)
+                if (source.getValue(v) != null)
+                    graph.setValue(v, source.getValue(v));
+            return graph;
+        }
+        finally
+        {
+            deleteMapped(file);
+        }
+    }
+
+
+    /**
+     * Delete a file that may still be mapped. The mapping stays valid; where
+     * the file cannot be deleted while mapped, it is deleted on exit.
+     *
+     * @param file the file
+     */
+    static void deleteMapped(Path file)
+    {
+        try
+        {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e)
+        {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+
+    /**
+     * @param nodes   the node count
+     * @param numEdge the edge count to report
+     * @param entries the stored entries
+     * @return the file header, ready to be written
+     */
+    static ByteBuffer header(int nodes, long numEdge, long entries)
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(0);
+        header.putLong(numEdge).putLong(entries);
+        header.flip();
+        return header;
+    }
+
+
+    /**
+     * Write a graph to a file that open can map. The rows are streamed
+     * through a small buffer, so the heap use does not depend on the size
+     * of the graph. The file is written next to its final location and
+     * moved into place, so readers never see a partial file.
+     *
+     * @param source the graph to store
+     * @param file   where to write
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Graph source, Path file) throws IOException
+    {
+        int nodes = source.nodeCount();
+        long entries = 0;
+        for (int v = 0; v < nodes; v++)
+            entries += source.degree(v);
+
+        Path absolute = file.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(),
+            absolute.getFileName().toString(), ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+            {
+                ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                buf.put(header(nodes, source.longEdgeCount(), entries));
+
+                long sum = 0;
+                for (int v = 0; v <= nodes; v++)
+                {
+                    if (buf.remaining() < 8)
+                        flush(channel, buf);
+                    buf.putLong(sum);
+                    if (v < nodes)
+                        sum += source.degree(v);
+                }
+                NeighborCursor row = source.cursor();
+                for (int v = 0; v < nodes; v++)
+                {
+                    row.reset(v);
+                    int[] ids = row.ids();
+                    for (int i = row.start(), end = row.end(); i < end; i++)
+                    {
+                        if (buf.remaining() < 4)
+                            flush(channel, buf);
+                        buf.putInt(ids[i]);
+                    }
+                }
+                for (int v = 0; v < nodes; v++)
+                {
+                    row.reset(v);
+                    for (int i = row.start(), end = row.end(); i < end; i++)
+                    {
+                        if (buf.remaining() < 4)
+                            flush(channel, buf);
+                        buf.putInt(row.weight(i));
+                    }
+                }
+                flush(channel, buf);
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * Map a file written by write
+     *
+     * @param file the file
+     * @return the graph it holds
+     * @throws IOException if the file cannot be read or is not a graph
+     */
+    static GraphOffHeap open(Path file) throws IOException
+    {
+        return open(file, CHUNK_SHIFT);
+    }
+
+
+    // Map a file in chunks of 2^shift values; small chunks let tests cross chunk ends
+    static GraphOffHeap open(Path file, int shift) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException(file + " is not a graph file");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                throw new IOException(file + " is not a graph file");
+            int nodes = header.getInt();
+            header.getInt();
+            long numEdge = header.getLong();
+            long entries = header.getLong();
+            if (nodes < 0 || entries < 0
+                || channel.size() != HEADER_SIZE + 8L * (nodes + 1) + 8L * entries)
+                throw new IOException(file + " is truncated");
+
+            FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+            long pos = HEADER_SIZE;
+            LongBuffer[] offsets = mapLongs(channel, mode, pos, nodes + 1L, shift);
+            pos += 8L * (nodes + 1);
+            IntBuffer[] targets = mapInts(channel, mode, pos, entries, shift);
+            pos += 4L * entries;
+            IntBuffer[] weights = mapInts(channel, mode, pos, entries, shift);
+            return new GraphOffHeap(nodes, numEdge, shift, offsets, targets, weights);
+        }
+    }
+
+
+    /**
+     * Map an array of longs in chunks of 2^shift values
+     *
+     * @param channel the file
+     * @param mode    how to map it; a writable mapping grows the file to fit
+     * @param pos     the offset of the array in the file
+     * @param count   the number of values
+     * @param shift   log2 of the chunk length
+     * @return the chunks in order
+     * @throws IOException if the file cannot be mapped
+     */
+    static LongBuffer[] mapLongs(FileChannel channel, FileChannel.MapMode mode, long pos,
+        long count, int shift) throws IOException
+    {
+        LongBuffer[] chunks = new LongBuffer[chunks(count, shift)];
+        for (int c = 0; c < chunks.length; c++)
+            chunks[c] = map(channel, mode, pos, count, c, shift, 8).asLongBuffer();
+        return chunks;
+    }
+
+
+    /**
+     * Map an array of ints in chunks of 2^shift values, like mapLongs
+     *
+     * @param channel the file
+     * @param mode    how to map it
+     * @param pos     the offset of the array in the file
+     * @param count   the number of values
+     * @param shift   log2 of the chunk length
+     * @return the chunks in order
+     * @throws IOException if the file cannot be mapped
+     */
+    static IntBuffer[] mapInts(FileChannel channel, FileChannel.MapMode mode, long pos,
+        long count, int shift) throws IOException
+    {
+        IntBuffer[] chunks = new IntBuffer[chunks(count, shift)];
+        for (int c = 0; c < chunks.length; c++)
+            chunks[c] = map(channel, mode, pos, count, c, shift, 4).asIntBuffer();
+        return chunks;
+    }
+
+
+    // Number of chunks of 2^shift values needed for count values
+    private static int chunks(long count, int shift)
+    {
+        return (int) ((count + (1L << shift) - 1) >>> shift);
+    }
+
+
+    // Map chunk c of an array of count values of size bytes starting at pos
+    private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long pos,
+        long count, int c, int shift, int size) throws IOException
+    {
+        long first = (long) c << shift;
+        long length = Math.min(1L << shift, count - first);
+        return channel.map(mode, pos + size * first, size * length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    private static void flush(FileChannel channel, ByteBuffer buf) throws IOException
+    {
+        buf.flip();
+        GraphSnapshot.writeFully(channel, buf);
+        buf.clear();
+    }
+
+
+    // The stored rows are fixed once written
+    public void init(int n)
+    {
+        throw new UnsupportedOperationException("GraphOffHeap is read-only");
+    }
+
+
+    // Return the number of vertices
+    public int nodeCount()
+    {
+        return n;
+    }
+
+
+    // Return the current number of edges; use longEdgeCount above 2^31 - 1
+    public int edgeCount()
+    {
+        if (numEdge > Integer.MAX_VALUE)
+            throw new IllegalStateException(numEdge + " edges do not fit an int");
+        return (int) numEdge;
+    }
+
+
+    // Return the current number of edges
+    public long longEdgeCount()
+    {
+        return numEdge;
+    }
+
+
+    // Get the value of node with index v
+    public Object getValue(int v)
+    {
+        if (v < 0 || v >= n)
+            throw new ArrayIndexOutOfBoundsException(v);
+        return nodeValues == null ? null : nodeValues[v];
+    }
+
+
+    // Set the value of node with index v
+    public void setValue(int v, Object val)
+    {
+        if (nodeValues == null)
+            nodeValues = new Object[n];
+        nodeValues[v] = val;
+    }
+
+
+    // Start of v's row; v may be n for the end of the last row
+    private long offset(int v)
+    {
+        return offsets[v >>> shift].get((int) (v & mask));
+    }
+
+
+    private int target(long i)
+    {
+        return targets[(int) (i >>> shift)].get((int) (i & mask));
+    }
+
+
+    private int weightAt(long i)
+    {
+        return weights[(int) (i >>> shift)].get((int) (i & mask));
+    }
+
+
+    // Copy count targets from position i into dst, across chunk ends
+    private void copyTargets(long i, int[] dst, int count)
+    {
+        int done = 0;
+        while (done < count)
+        {
+            IntBuffer chunk = targets[(int) (i >>> shift)];
+            int at = (int) (i & mask);
+            int len = Math.min(count - done, chunk.capacity() - at);
+            chunk.get(at, dst, done, len);
+            done += len;
+            i += len;
+        }
+    }
+
+
+    // The stored rows are fixed once written
+    public void addEdge(int v, int w, int wgt)
+    {
+        throw new UnsupportedOperationException("GraphOffHeap is read-only");
+    }
+
+
+    // Return the position of w in v's row, or -1 if there is no (v,w) edge
+    private long find(int v, int w)
+    {
+        long lo = offset(v);
+        long hi = offset(v + 1) - 1;
+        while (lo <= hi)
+        {
+            long mid = (lo + hi) >>> 1;
+            int t = target(mid);
+            if (t < w)
+                lo = mid + 1;
+            else if (t > w)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+
+    // Get the weight value for an edge
+    public int weight(int v, int w)
+    {
+        long pos = find(v, w);
+        return pos < 0 ? 0 : weightAt(pos);
+    }
+
+
+    // The stored rows are fixed once written
+    public void removeEdge(int v, int w)
+    {
+        throw new UnsupportedOperationException("GraphOffHeap is read-only");
+    }
+
+
+    // Returns true iff the graph has the edge
+    public boolean hasEdge(int v, int w)
+    {
+        return find(v, w) >= 0;
+    }
+
+
+    // Returns an array containing the indices of the neighbors of v
+    public int[] neighbors(int v)
+    {
+        long start = offset(v);
+        int[] row = new int[(int) (offset(v + 1) - start)];
+        copyTargets(start, row, row.length);
+        return row;
+    }
+
+
+    // Return the number of neighbors of v
+    public int degree(int v)
+    {
+        return (int) (offset(v + 1) - offset(v));
+    }
+
+
+    // Returns a cursor that copies each row onto the heap
+    public NeighborCursor cursor()
+    {
+        return new RowCursor();
+    }
+
+
+    private class RowCursor implements NeighborCursor
+    {
+        private int[] buffer = new int[0];
+        private long  first; // position of the row in the file arrays
+        private int   end;
+
+
+        public void reset(int v)
+        {
+            first = offset(v);
+            end = (int) (offset(v + 1) - first);
+            if (buffer.length < end)
+                buffer = new int[Math.max(end, 2 * buffer.length)];
+            copyTargets(first, buffer, end);
+        }
+
+
+        public int[] ids()
+        {
+            return buffer;
+        }
+
+
+        public int start()
+        {
+            return 0;
+        }
+
+
+        public int end()
+        {
+            return end;
+        }
+
+
+        public int weight(int i)
+        {
+            return weightAt(first + i);
+        }
+    }
+}
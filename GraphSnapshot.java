@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of a loaded, tau-filtered graph. The file holds a fixed
+ * header followed by the offsets, targets and weights arrays of a GraphCSR,
+ * all little-endian. Any graph can be written; its rows are streamed
+ * through a cursor and a small buffer. The header records the size, modification time and
+ * CRC32C checksum of the source data set together with tau, so a snapshot
+ * taken from another file or another tau is never reused. The arrays are
+ * checked to form valid sorted rows when read, so a damaged snapshot is
+ * parsed again instead of failing later in a query.
+ *
+ * <pre>
+ * int    magic, version
+ * long   source size, source modification time, source checksum
+ * double tau
+ * int    node count, edge count, stored entries, connected node count
+ * int[]  offsets (node count + 1), targets, weights (stored entries each)
+ * </pre>
+ */
+public class GraphSnapshot
+{
+    private static final int  MAGIC       = 0x50534E47; // "GNSP"
+    private static final int  VERSION     = 1;
+    private static final int  HEADER_SIZE = 8 + 24 + 8 + 16;
+
+    // Arrays are mapped at most this many ints at a time
+    private static final int  CHUNK       = 1 << 28;
+
+    // Source files are checksummed this many bytes at a time
+    private static final long WINDOW      = 1L << 30;
+
+    private final GraphCSR graph;
+    private final int      connectedCount;
+
+
+    private GraphSnapshot(GraphCSR graph, int connectedCount)
+    {
+        this.graph = graph;
+        this.connectedCount = connectedCount;
+    }
+
+
+    /**
+     * @return the graph stored in the snapshot
+     */
+    GraphCSR graph()
+    {
+        return graph;
+    }
+
+
+    /**
+     * @return the number of connected nodes reported when the source was loaded
+     */
+    int connectedCount()
+    {
+        return connectedCount;
+    }
+
+
+    /**
+     * Write a snapshot. The file is written next to its final location and
+     * moved into place, so readers never see a partial snapshot.
+     *
+     * @param snapshot       where to write
+     * @param source         the data set the graph was loaded from
+     * @param tau            the tau the graph was loaded with
+     * @param connectedCount the value loadGraphFromDataSet returned
+     * @param graph          the graph to store
+     * @throws IOException if either file cannot be accessed, or the graph
+     *                     has too many edges for the int counts of the format
+     */
+    static void write(Path snapshot, Path source, double tau, int connectedCount,
+        Graph graph) throws IOException
+    {
+        int nodes = graph.nodeCount();
+        long entries = 0;
+        for (int v = 0; v < nodes; v++)
+            entries += graph.degree(v);
+        if (entries > Integer.MAX_VALUE || graph.longEdgeCount() > Integer.MAX_VALUE)
+            throw new IOException("Too many edges for a snapshot: " + graph.longEdgeCount());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.putLong(Files.size(source));
+        header.putLong(Files.getLastModifiedTime(source).toMillis());
+        header.putLong(checksum(source));
+        header.putDouble(tau);
+        header.putInt(nodes).putInt(graph.edgeCount());
+        header.putInt((int) entries).putInt(connectedCount);
+        header.flip();
+
+        Path absolute = snapshot.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(),
+            absolute.getFileName().toString(), ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+            {
+                writeFully(channel, header);
+                ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+                int offset = 0;
+                for (int v = 0; v <= nodes; v++)
+                {
+                    putInt(channel, buf, offset);
+                    if (v < nodes)
+                        offset += graph.degree(v);
+                }
+                NeighborCursor row = graph.cursor();
+                for (int v = 0; v < nodes; v++)
+                {
+                    row.reset(v);
+                    int[] ids = row.ids();
+                    for (int i = row.start(), end = row.end(); i < end; i++)
+                        putInt(channel, buf, ids[i]);
+                }
+                for (int v = 0; v < nodes; v++)
+                {
+                    row.reset(v);
+                    for (int i = row.start(), end = row.end(); i < end; i++)
+                        putInt(channel, buf, row.weight(i));
+                }
+                buf.flip();
+                writeFully(channel, buf);
+                channel.force(false);
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    /**
+     * Read a snapshot if it was taken from the current contents of source
+     * with the same tau
+     *
+     * @param snapshot the snapshot file
+     * @param source   the data set the caller wants loaded
+     * @param tau      the tau the caller wants
+     * @return the snapshot, or null if it is missing, stale or not a snapshot
+     * @throws IOException if either file cannot be read
+     */
+    static GraphSnapshot read(Path snapshot, Path source, double tau) throws IOException
+    {
+        if (!Files.isRegularFile(snapshot))
+            return null;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE)
+                return null;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION)
+                return null;
+            long size = header.getLong();
+            long modified = header.getLong();
+            long sum = header.getLong();
+            if (Double.doubleToLongBits(header.getDouble()) != Double.doubleToLongBits(tau)
+                || size != Files.size(source))
+                return null;
+            // an unchanged modification time is trusted; otherwise compare contents
+            if (modified != Files.getLastModifiedTime(source).toMillis()
+                && sum != checksum(source))
+                return null;
+
+            int nodes = header.getInt();
+            int numEdge = header.getInt();
+            int stored = header.getInt();
+            int connected = header.getInt();
+            if (nodes < 0 || numEdge < 0 || stored < 0 || connected < 0
+                || channel.size() != HEADER_SIZE + 4L * (nodes + 1 + 2L * stored))
+                return null;
+
+            long pos = HEADER_SIZE;
+            int[] offsets = new int[nodes + 1];
+            pos = readInts(channel, pos, offsets);
+            int[] targets = new int[stored];
+            pos = readInts(channel, pos, targets);
+            int[] weights = new int[stored];
+            readInts(channel, pos, weights);
+            if (!validRows(offsets, targets))
+                return null;
+            return new GraphSnapshot(new GraphCSR(offsets, targets, weights, numEdge), connected);
+        }
+    }
+
+
+    // True if the offsets run from 0 to the end of targets without going
+    // back, and every row holds increasing vertex ids
+    private static boolean validRows(int[] offsets, int[] targets)
+    {
+        int nodes = offsets.length - 1;
+        if (offsets[0] != 0 || offsets[nodes] != targets.length)
+            return false;
+        for (int v = 0; v < nodes; v++)
+        {
+            if (offsets[v + 1] < offsets[v])
+                return false;
+            for (int i = offsets[v]; i < offsets[v + 1]; i++)
+                if (targets[i] < 0 || targets[i] >= nodes
+                    || (i > offsets[v] && targets[i] <= targets[i - 1]))
+                    return false;
+        }
+        return true;
+    }
+
+
+    // CRC32C of the whole file
+    private static long checksum(Path file) throws IOException
+    {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = channel.size();
+            for (long start = 0; start < size; start += WINDOW)
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(WINDOW, size - start)));
+        }
+        return crc.getValue();
+    }
+
+
+    // Add an int to the buffer, writing the buffer out first when it is full
+    private static void putInt(FileChannel channel, ByteBuffer buf, int value)
+        throws IOException
+    {
+        if (!buf.hasRemaining())
+        {
+            buf.flip();
+            writeFully(channel, buf);
+            buf.clear();
+        }
+        buf.putInt(value);
+    }
+
+
+    static void writeInts(FileChannel channel, ByteBuffer buf, int[] values)
+        throws IOException
+    {
+        int done = 0;
+        while (done < values.length)
+        {
+            buf.clear();
+            IntBuffer ints = buf.asIntBuffer();
+            int n = Math.min(ints.capacity(), values.length - done);
+            ints.put(values, done, n);
+            buf.limit(n * 4);
+            writeFully(channel, buf);
+            done += n;
+        }
+    }
+
+
+    static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException
+    {
+        while (buf.hasRemaining())
+            channel.write(buf);
+    }
+
+
+    // Fill values from the file starting at pos and return the position after them
+    static long readInts(FileChannel channel, long pos, int[] values)
+        throws IOException
+    {
+        int done = 0;
+        while (done < values.length)
+        {
+            int n = Math.min(CHUNK, values.length - done);
+            channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * n)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(values, done, n);
+            pos += 4L * n;
+            done += n;
+        }
+        return pos;
+    }
+}
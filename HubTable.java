@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Open addressing tables from a neighbor id to an int, so the edges of a
+ * high degree vertex are found in constant time instead of by a search of
+ * its row. A table is a plain int[] of key, value pairs probed linearly and
+ * kept at most half full; a key of -1 marks a free pair. Keys are node
+ * ids, so a negative key is never in a table.
+ */
+final class HubTable
+{
+    /**
+     * Rows at least this long get a table; shorter ones are searched. Below
+     * it a binary search touches few cache lines and is as fast as a probe.
+     */
+    static final int HUB_DEGREE = 128;
+
+    /** What get returns for a key that is not in the table */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int FREE = -1;
+
+
+    private HubTable()
+    {
+        // static helpers only
+    }
+
+
+    /**
+     * @param entries the number of keys the table must hold
+     * @return an empty table with room for them
+     */
+    static int[] create(int entries)
+    {
+        int pairs = Integer.highestOneBit(Math.max(1, entries)) << 2; // 2 to 4 times entries
+        int[] table = new int[2 * pairs];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+
+    /**
+     * @param table a table
+     * @param key   a neighbor id
+     * @return the value stored for key, or MISSING
+     */
+    static int get(int[] table, int key)
+    {
+        if (key < 0)
+            return MISSING; // would match a free pair
+        int mask = table.length - 1;
+        for (int i = home(key, mask); ; i = (i + 2) & mask)
+        {
+            int k = table[i];
+            if (k == key)
+                return table[i + 1];
+            if (k == FREE)
+                return MISSING;
+        }
+    }
+
+
+    /**
+     * Store a value, growing the table if it would be over half full
+     *
+     * @param table   a table
+     * @param key     a neighbor id, not negative
+     * @param value   its value
+     * @param entries the number of keys once this one is in
+     * @return the table, or its larger replacement
+     */
+    static int[] put(int[] table, int key, int value, int entries)
+    {
+        if (4 * entries > table.length)
+        {
+            int[] grown = create(entries);
+            for (int i = 0; i < table.length; i += 2)
+                if (table[i] != FREE)
+                    insert(grown, table[i], table[i + 1]);
+            table = grown;
+        }
+        insert(table, key, value);
+        return table;
+    }
+
+
+    /**
+     * Remove a key, moving later keys of its probe run back into the gap
+     *
+     * @param table a table
+     * @param key   a neighbor id
+     */
+    static void remove(int[] table, int key)
+    {
+        if (key < 0)
+            return;
+        int mask = table.length - 1;
+        int gap = home(key, mask);
+        while (table[gap] != key)
+        {
+            if (table[gap] == FREE)
+                return;
+            gap = (gap + 2) & mask;
+        }
+        table[gap] = FREE;
+        for (int i = (gap + 2) & mask; table[i] != FREE; i = (i + 2) & mask)
+        {
+            int home = home(table[i], mask);
+            // table[i] may fill the gap unless its home lies after the gap, up to i
+            if (((i - home) & mask) >= ((i - gap) & mask))
+            {
+                table[gap] = table[i];
+                table[gap + 1] = table[i + 1];
+                table[i] = FREE;
+                gap = i;
+            }
+        }
+    }
+
+
+    private static void insert(int[] table, int key, int value)
+    {
+        int mask = table.length - 1;
+        int i = home(key, mask);
+        while (table[i] != FREE && table[i] != key)
+            i = (i + 2) & mask;
+        table[i] = key;
+        table[i + 1] = value;
+    }
+
+
+    // Even index where a key's probe run starts
+    private static int home(int key, int mask)
+    {
+        int h = key * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) << 1) & mask;
+    }
+}
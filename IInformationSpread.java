@@ -51,6 +51,32 @@ public interface IInformationSpread
      */
     List<Integer> path(int source, int destination);
 
+    /**
+     * Receives the paths found by {@link #paths}
+     */
+    interface PathConsumer
+    {
+        /**
+         * Called once per pair, possibly from several threads at once
+         *
+         * @param pair   the index of the pair in the arrays given to paths
+         * @param path   the nodes from source to destination in path[0] ..
+         *               path[length - 1]; only valid during the call
+         * @param length the number of nodes, 0 if destination cannot be reached
+         */
+        void accept(int pair, int[] path, int length);
+    }
+
+    /**
+     * Find the shortest path of every source/destination pair, as
+     * {@link #path} would, and stream each one to a consumer
+     *
+     * @param sources      the id of the origin node of every pair
+     * @param destinations the id of the destination node of every pair
+     * @param consumer     receives each pair's path
+     */
+    void paths(int[] sources, int[] destinations, PathConsumer consumer);
+
     /**
      * Compute the average degree of the graph
      */
@@ -0,0 +1,168 @@
+import java.util.Arrays;
+
+/**
+ * Indexed 4-ary min-heap of vertex ids keyed by double, on primitive arrays.
+ * Each vertex is in the heap at most once, and lowering its key moves it
+ * in place (a true decrease-key) instead of adding a duplicate entry. Equal
+ * keys come out in order of vertex id. The heap is sized once and reused;
+ * no operation allocates.
+ */
+public class IndexedMinHeap
+{
+    private static final int ARITY = 4;
+
+    private final int[]    heap;     // vertex at each heap slot
+    private final int[]    position; // heap slot of each vertex, -1 if absent
+    private final double[] key;      // key of each vertex while it is in the heap
+    private int            size;
+
+
+    /**
+     * @param n the number of vertices; ids run from 0 to n - 1
+     */
+    IndexedMinHeap(int n)
+    {
+        heap = new int[n];
+        position = new int[n];
+        key = new double[n];
+        Arrays.fill(position, -1);
+    }
+
+
+    /**
+     * @return true if the heap holds no vertex
+     */
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+
+    /**
+     * @return the number of vertices in the heap
+     */
+    int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * @param v a vertex
+     * @return true if v is in the heap
+     */
+    boolean contains(int v)
+    {
+        return position[v] >= 0;
+    }
+
+
+    /**
+     * @return the key of the vertex at the top, which must exist
+     */
+    double minKey()
+    {
+        return key[heap[0]];
+    }
+
+
+    /**
+     * Add v with key k, or lower its key to k if it is already in the heap
+     * with a larger one
+     *
+     * @param v the vertex
+     * @param k its key
+     */
+    void push(int v, double k)
+    {
+        int slot = position[v];
+        if (slot < 0)
+        {
+            slot = size++;
+            heap[slot] = v;
+            position[v] = slot;
+        }
+        else if (k >= key[v])
+            return;
+        key[v] = k;
+        siftUp(slot);
+    }
+
+
+    /**
+     * Remove the vertex with the smallest key
+     *
+     * @return the removed vertex
+     */
+    int pop()
+    {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0)
+        {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+
+    /**
+     * Remove every vertex, in time proportional to the vertices left
+     */
+    void clear()
+    {
+        for (int i = 0; i < size; i++)
+            position[heap[i]] = -1;
+        size = 0;
+    }
+
+
+    private boolean less(int a, int b)
+    {
+        return key[a] < key[b] || (key[a] == key[b] && a < b);
+    }
+
+
+    private void siftUp(int slot)
+    {
+        int v = heap[slot];
+        while (slot > 0)
+        {
+            int parent = (slot - 1) / ARITY;
+            if (!less(v, heap[parent]))
+                break;
+            heap[slot] = heap[parent];
+            position[heap[slot]] = slot;
+            slot = parent;
+        }
+        heap[slot] = v;
+        position[v] = slot;
+    }
+
+
+    private void siftDown(int slot)
+    {
+        int v = heap[slot];
+        while (true)
+        {
+            int first = slot * ARITY + 1;
+            if (first >= size)
+                break;
+            int best = first;
+            int last = Math.min(first + ARITY, size);
+            for (int c = first + 1; c < last; c++)
+                if (less(heap[c], heap[best]))
+                    best = c;
+            if (!less(heap[best], v))
+                break;
+            heap[slot] = heap[best];
+            position[heap[slot]] = slot;
+            slot = best;
+        }
+        heap[slot] = v;
+        position[v] = slot;
+    }
+}
@@ -1,143 +1,470 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class InformationSpread implements IInformationSpread {
+    private static final double CC_PRECISION = 0.01; // used when comparing CC values
     private double tau;
-    private GraphL graph;
+    private Graph graph;
+    private final boolean compressed;
+    private boolean parallelLoading;
+    private boolean parallelSearch;
+    private boolean bidirectionalPaths;
+    private boolean offHeap;
+    private NodeIndex index; // built on first use, dropped on reload
+    private PathEngine paths; // built on first use, dropped on reload
+    private PathTreeCache pathTrees; // null unless enabled, emptied on reload
+    private ContractionHierarchy pathIndex; // null unless built, dropped on reload
+    private CascadeSimulator cascades; // built on first use, dropped on reload
+    private MultiSourceBFS batchSearch; // built on first use, dropped on reload
+    // idle searchers of the graph, one per thread that has searched at once; replaced on reload
+    private Deque<DirectionOptimizingBFS> searchers = new ArrayDeque<>();
+    private Deque<ParallelBFS> parallelSearchers = new ArrayDeque<>();
+    private boolean loaded; // false until a graph is loaded, as the empty GraphL has no size
+
     public InformationSpread() {
+        this(false);
+    }
+
+    /**
+     * @param compressed if true, the graph is converted to a read-only
+     *                   {@link GraphCSR} once loaded and every query runs on it
+     */
+    public InformationSpread(boolean compressed) {
         this.graph = new GraphL();
+        this.compressed = compressed;
     }
-    @Override
-    public int loadGraphFromDataSet(String filePath, double tau) {
-        this.tau = tau * 100; // scale tau up for integer comparison
-        HashSet<Integer> connectedNodes = new HashSet<>();
-        List<String> lines = readFile(filePath);
 
-        if (!lines.isEmpty()) {
-            initializeGraph(lines.get(0));
-            for (int i = 1; i < lines.size(); i++) {
-                processEdge(lines.get(i), connectedNodes);
-            }
+    // Replace the graph and drop everything derived from the old one
+    private void setGraph(Graph graph) {
+        if (offHeap && !(graph instanceof GraphOffHeap)) {
+            graph = moveOffHeap(graph);
+        }
+        this.graph = graph;
+        this.loaded = true;
+        this.index = null;
+        this.paths = null;
+        this.pathIndex = null;
+        this.cascades = null;
+        this.batchSearch = null;
+        this.searchers = new ArrayDeque<>();
+        this.parallelSearchers = new ArrayDeque<>();
+        if (pathTrees != null) {
+            pathTrees.clear();
         }
-        return connectedNodes.size();
     }
-    private List<String> readFile(String filePath) {
-        List<String> lines = new ArrayList<>();
-        try (Scanner scanner = new Scanner(new File(filePath))) {
-            while (scanner.hasNextLine()) {
-                lines.add(scanner.nextLine());
-            }
-        } catch (FileNotFoundException e) {
-            System.err.println("File not found: " + e.getMessage());
+
+    /**
+     * Parse data sets on every core of the common ForkJoinPool. A graph
+     * loaded this way is always a read-only {@link GraphCSR}.
+     *
+     * @param parallelLoading true to split the file across worker threads
+     */
+    public void setParallelLoading(boolean parallelLoading) {
+        this.parallelLoading = parallelLoading;
+    }
+
+    /**
+     * Expand each level of the generations searches on every core of the
+     * common ForkJoinPool. Worth it only for very large graphs; results are
+     * the same either way.
+     *
+     * @param parallelSearch true to search in parallel
+     */
+    public void setParallelSearch(boolean parallelSearch) {
+        this.parallelSearch = parallelSearch;
+    }
+
+    /**
+     * Answer {@link #path} by searching from both ends at once. Much faster
+     * for nearby pairs on large graphs; the paths are the same either way.
+     *
+     * @param bidirectionalPaths true to search from both ends
+     */
+    public void setBidirectionalPaths(boolean bidirectionalPaths) {
+        this.bidirectionalPaths = bidirectionalPaths;
+    }
+
+    /**
+     * Keep every graph loaded from now on in a memory mapped temporary file
+     * instead of on the heap, as a read-only {@link GraphOffHeap}. Data sets
+     * are streamed straight into the file, so the graph is never on the heap
+     * while loading either; this takes precedence over parallel loading.
+     * Queries, outbreak simulations and snapshot writing read it through
+     * cursors, so the heap holds only per-node state. Two exceptions: a
+     * graph read from a snapshot passes through the heap on its way to the
+     * file, and {@link #buildPathIndex} builds its index on the heap.
+     *
+     * @param offHeap true to move loaded graphs off the heap
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    // Copy a graph read from a snapshot off the heap, or keep it where it is if that fails
+    private Graph moveOffHeap(Graph graph) {
+        Instrumentation.Probe phase = Instrumentation.phase("offHeap");
+        Instrumentation.scanned(phase, graph.longEdgeCount());
+        try {
+            return GraphOffHeap.copyOf(graph);
+        } catch (IOException e) {
+            System.err.println("Could not move the graph off the heap: " + e.getMessage());
+            return graph;
+        } finally {
+            Instrumentation.end(phase, graph);
         }
-        return lines;
     }
 
-    private void initializeGraph(String firstLine) {
-        String[] parts = firstLine.split("\\s+");
-        int numVertices = Integer.parseInt(parts[0]);
-        graph.init(numVertices + 1); // Initialize the graph with one extra vertex
+    /**
+     * Keep the complete shortest path trees of recent {@link #path} sources,
+     * so later paths from the same source are read off the tree instead of
+     * searched. Trees take 4 bytes per node each; the least recently used
+     * are dropped to stay within the budget. Replaces any previous cache.
+     *
+     * @param budgetBytes the most memory the trees may take, 0 to disable
+     */
+    public void setPathCacheBudget(long budgetBytes) {
+        this.pathTrees = budgetBytes > 0 ? new PathTreeCache(budgetBytes) : null;
     }
 
-    private void processEdge(String line, Set<Integer> connectedNodes) {
-        String[] parts = line.split("\\s+");
-        int from = Integer.parseInt(parts[0]);
-        int to = Integer.parseInt(parts[1]);
-        int weight = (int) (Double.parseDouble(parts[2]) * 100);
+    /**
+     * @return the number of {@link #path} calls answered from a cached tree
+     */
+    public long pathCacheHits() {
+        return pathTrees == null ? 0 : pathTrees.hits();
+    }
 
-        if (from != 0 && to != 0 && weight > this.tau - 0.1) {
-            graph.addEdge(from, to, weight);
-            graph.addEdge(to, from, weight); // Add reverse edge for undirected graph
-            connectedNodes.add(from);
-            connectedNodes.add(to);
+    /**
+     * @return the number of {@link #path} calls that had to build a tree
+     */
+    public long pathCacheMisses() {
+        return pathTrees == null ? 0 : pathTrees.misses();
+    }
+
+    /**
+     * @return the number of trees dropped to stay within the budget
+     */
+    public long pathCacheEvictions() {
+        return pathTrees == null ? 0 : pathTrees.evictions();
+    }
+
+    /**
+     * Preprocess the loaded graph into a contraction hierarchy, so that
+     * {@link #path} only searches upwards from both ends. Worth it when many
+     * paths are asked of a graph that stays loaded; the index is dropped
+     * when another graph is loaded. Paths are equally probable to those
+     * found without it, though ties may be broken differently.
+     *
+     * @throws IllegalArgumentException if an edge weight is above 100
+     */
+    public void buildPathIndex() {
+        Instrumentation.Probe probe = Instrumentation.operation("buildPathIndex");
+        try {
+            pathIndex = ContractionHierarchy.build(graph);
+        } finally {
+            end(probe);
         }
     }
 
-    @Override
-    public int[] getNeighbors(int id) {
-        return graph.neighbors(id);
+    /**
+     * Like {@link #buildPathIndex()}, but reuse the index stored at indexPath
+     * when it was built for the loaded graph. Otherwise the index is built
+     * and written there.
+     *
+     * @param indexPath where the index is read from and written to
+     */
+    public void buildPathIndex(String indexPath) {
+        Instrumentation.Probe probe = Instrumentation.operation("buildPathIndex");
+        try {
+            Path indexFile = Paths.get(indexPath);
+            try {
+                pathIndex = ContractionHierarchy.read(indexFile, graph);
+                if (pathIndex != null) {
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Could not read path index " + indexPath + ": " + e.getMessage());
+            }
+
+            pathIndex = ContractionHierarchy.build(graph);
+            try {
+                pathIndex.write(indexFile);
+            } catch (IOException e) {
+                System.err.println("Could not write path index " + indexPath + ": " + e.getMessage());
+            }
+        } finally {
+            end(probe);
+        }
     }
 
     @Override
-    public List<Integer> path(int source, int destination) {
-        if (source == destination) {
-            return Collections.singletonList(source);
+    public int loadGraphFromDataSet(String filePath, double tau) {
+        Instrumentation.Probe probe = Instrumentation.operation("loadGraphFromDataSet");
+        try {
+            return load(filePath, tau);
+        } finally {
+            end(probe);
         }
+    }
+
+    /**
+     * Load a data set, reusing a binary snapshot of the filtered graph when
+     * one was taken from the same file with the same tau. Otherwise the file
+     * is parsed as usual and a fresh snapshot is written. A graph read from
+     * a snapshot is a read-only {@link GraphCSR}, moved off the heap when
+     * {@link #setOffHeap} is on.
+     *
+     * @param filePath     the path of the data
+     * @param tau          the minimum edge weight required for an edge to be added
+     * @param snapshotPath where the snapshot is read from and written to
+     * @return the number of entries (nodes) in the dataset (graph)
+     */
+    public int loadGraphFromDataSet(String filePath, double tau, String snapshotPath) {
+        Instrumentation.Probe probe = Instrumentation.operation("loadGraphFromDataSet");
+        try {
+            Path source = Paths.get(filePath);
+            Path snapshotFile = Paths.get(snapshotPath);
+            Instrumentation.Probe phase = Instrumentation.phase("snapshotRead");
+            try {
+                GraphSnapshot snapshot = GraphSnapshot.read(snapshotFile, source, tau);
+                if (snapshot != null) {
+                    this.tau = tau * 100;
+                    setGraph(snapshot.graph());
+                    return snapshot.connectedCount();
+                }
+            } catch (IOException e) {
+                System.err.println("Could not read snapshot " + snapshotPath + ": " + e.getMessage());
+            } finally {
+                Instrumentation.end(phase, null);
+            }
+
+            Graph before = graph;
+            int connectedCount = load(filePath, tau);
+            // a file that could not be parsed leaves the old graph, which must not be stored
+            if (graph != before && Files.isRegularFile(source)) {
+                phase = Instrumentation.phase("snapshotWrite");
+                try {
+                    GraphSnapshot.write(snapshotFile, source, tau, connectedCount, graph);
+                } catch (IOException e) {
+                    System.err.println("Could not write snapshot " + snapshotPath + ": " + e.getMessage());
+                } finally {
+                    Instrumentation.end(phase, graph);
+                }
+            }
+            return connectedCount;
+        } finally {
+            end(probe);
+        }
+    }
+
+    // Parse a data set into the graph, returning its connected node count or 0 if it cannot be read
+    private int load(String filePath, double tau) {
+        this.tau = tau * 100; // scale tau up for integer comparison
+        Instrumentation.Probe phase = Instrumentation.phase("parse");
+        try {
+            if (offHeap) {
+                OffHeapGraphLoader loaded = OffHeapGraphLoader.load(Paths.get(filePath), this.tau);
+                if (loaded == null) {
+                    return 0;
+                }
+                setGraph(loaded.graph());
+                return loaded.connectedCount();
+            }
+            if (parallelLoading) {
+                ParallelGraphLoader loaded = ParallelGraphLoader.load(Paths.get(filePath),
+                        this.tau, ForkJoinPool.commonPool());
+                if (loaded == null) {
+                    return 0;
+                }
+                setGraph(loaded.graph());
+                return loaded.connectedCount();
+            }
+            GraphLoader loader = new GraphLoader();
+            if (MtxReader.read(Paths.get(filePath), loader)) {
+                setGraph(loader.finish());
+            }
+            return loader.connectedCount;
+        } catch (NoSuchFileException e) {
+            System.err.println("File not found: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Could not read " + filePath + ": " + e.getMessage());
+        } finally {
+            end(phase);
+        }
+        return 0;
+    }
 
-        int nodeCount = graph.nodeCount();
-        double[] distance = new double[nodeCount];
-        boolean[] visited = new boolean[nodeCount];
-        int[] pred = new int[nodeCount];
-        Arrays.fill(distance, Double.POSITIVE_INFINITY);
-        Arrays.fill(pred, -10);
-        Arrays.fill(visited, false);
-        distance[source] = 0;
+    // Stop timing a probe, sized by the loaded graph
+    private void end(Instrumentation.Probe probe) {
+        Instrumentation.end(probe, loaded ? graph : null);
+    }
 
-        PriorityQueue<Integer> priorityQueue =
-                new PriorityQueue<>(Comparator.comparing(i -> distance[i]));
-        priorityQueue.add(source);
+    /**
+     * Builds the graph straight from the parsed edges, into a GraphL or,
+     * in compressed mode, into a GraphCSR builder.
+     */
+    private class GraphLoader implements MtxReader.EdgeHandler {
+        private GraphL linked;
+        private GraphCSR.Builder builder;
+        private final BitSet connectedNodes = new BitSet();
+        private int connectedCount;
+
+        @Override
+        public void vertices(int numVertices) {
+            // Initialize the graph with one extra vertex
+            if (compressed) {
+                builder = new GraphCSR.Builder(numVertices + 1);
+            } else {
+                linked = new GraphL();
+                linked.init(numVertices + 1);
+            }
+        }
 
-        while (!priorityQueue.isEmpty()) {
-            int vertexU = priorityQueue.poll();
-            if (vertexU == destination) {
-                break;
+        @Override
+        public void edge(int from, int to, double value) {
+            int weight = scaleWeight(value);
+            if (keepEdge(from, to, weight, tau)) {
+                addEdge(from, to, weight);
+                addEdge(to, from, weight); // Add reverse edge for undirected graph
+                markConnected(from);
+                markConnected(to);
             }
+        }
+
+        private void addEdge(int from, int to, int weight) {
+            if (compressed) {
+                builder.addEdge(from, to, weight);
+            } else {
+                linked.addEdge(from, to, weight);
+            }
+        }
 
-            if (visited[vertexU]) {
-                continue;
+        private void markConnected(int node) {
+            if (!connectedNodes.get(node)) {
+                connectedNodes.set(node);
+                connectedCount++;
             }
-            visited[vertexU] = true;
-            relaxEdges(vertexU, distance, pred, visited, priorityQueue);
         }
 
-        return buildPath(pred, source, destination);
+        Graph finish() {
+            return compressed ? builder.build() : linked;
+        }
+    }
+
+    // Turn a weight read from the file into the integer percentage stored in the graph
+    static int scaleWeight(double value) {
+        return (int) (value * 100);
+    }
+
+    // An edge is kept if it avoids the unused vertex 0 and its scaled weight reaches tau
+    static boolean keepEdge(int from, int to, int weight, double scaledTau) {
+        return from != 0 && to != 0 && weight > scaledTau - 0.1;
+    }
+
+    @Override
+    public int[] getNeighbors(int id) {
+        Instrumentation.Probe probe = Instrumentation.operation("getNeighbors");
+        try {
+            return graph.neighbors(id);
+        } finally {
+            end(probe);
+        }
     }
 
-    private void relaxEdges(int vertexU, double[] distance, int[] pred,
-                            boolean[] visited, PriorityQueue priorityQueue) {
-        int[] neighbors = graph.neighbors(vertexU);
-        for (int i = 0; i < neighbors.length; i++) {
-            if (!visited[neighbors[i]]) {
-                double weight = graph.weight(vertexU, neighbors[i]);
-                double prob = weight / 100.0;
-                double cost = -Math.log(prob);
-                if (distance[vertexU] + cost < distance[neighbors[i]]) {
-                    distance[neighbors[i]] = distance[vertexU] + cost;
-                    pred[neighbors[i]] = vertexU;
-                    priorityQueue.add(neighbors[i]);
+    @Override
+    public List<Integer> path(int source, int destination) {
+        Instrumentation.Probe probe = Instrumentation.operation("path");
+        try {
+            if (source == destination) {
+                return Collections.singletonList(source);
+            }
+            if (pathIndex != null) {
+                return pathIndex.path(source, destination);
+            }
+            if (pathTrees != null) {
+                int[] tree = pathTrees.get(source);
+                if (tree == null) {
+                    tree = paths().tree(source);
+                    pathTrees.put(source, tree);
                 }
+                return PathEngine.pathTo(tree, destination);
+            }
+            if (bidirectionalPaths) {
+                return paths().bidirectionalPath(source, destination);
             }
+            return paths().path(source, destination);
+        } finally {
+            end(probe);
         }
     }
 
-    private List<Integer> buildPath(int[] predecessors, int source, int destination) {
-        List<Integer> path = new ArrayList<>();
-        for (int at = destination; at != -10; at = predecessors[at]) {
-            path.add(at);
+    /**
+     * Pairs are grouped by source and searched on every core of the common
+     * ForkJoinPool. The paths are those {@link #path} finds without a path
+     * index, which may break ties between equally probable paths differently.
+     *
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    @Override
+    public void paths(int[] sources, int[] destinations, PathConsumer consumer) {
+        Instrumentation.Probe probe = Instrumentation.operation("paths");
+        try {
+            if (sources.length != destinations.length) {
+                throw new IllegalArgumentException(sources.length + " sources but "
+                        + destinations.length + " destinations");
+            }
+            new PathBatch(paths(), graph.nodeCount(), ForkJoinPool.commonPool())
+                    .run(sources, destinations, consumer);
+        } finally {
+            end(probe);
         }
-        if (path.get(path.size() - 1) != source) {
-            return new ArrayList<>(); // Path does not exist
+    }
+
+    // Most probable path engine of the current graph
+    private PathEngine paths() {
+        if (paths == null) {
+            paths = new PathEngine(graph);
         }
-        Collections.reverse(path);
-        return path;
+        return paths;
     }
 
 
     @Override
     public double avgDegree() {
+        Instrumentation.Probe probe = Instrumentation.operation("avgDegree");
+        try {
+            return averageDegree();
+        } finally {
+            end(probe);
+        }
+    }
+
+    @Override
+    public double rNumber() {
+        Instrumentation.Probe probe = Instrumentation.operation("rNumber");
+        try {
+            return plainRNumber();
+        } finally {
+            end(probe);
+        }
+    }
+
+    private double averageDegree() {
         if ((graph.nodeCount() - 1) == 0) {
             return 0.0;
         }
-        int edgeNum = graph.edgeCount();
+        long edgeNum = graph.longEdgeCount();
         int nodeNum = graph.nodeCount() - 1;
         double avgDegree = (double) edgeNum / nodeNum;
         return avgDegree;
     }
 
-    @Override
-    public double rNumber() {
-        double avgDegree = this.avgDegree();
+    private double plainRNumber() {
+        double avgDegree = this.averageDegree();
         double d = 1.0;
         double rNumber = tau * avgDegree * d / 100;
         return rNumber;
@@ -145,355 +472,469 @@ public class InformationSpread implements IInformationSpread {
 
     @Override
     public int generations(int seed, double threshold) {
-        if (seed <= 0 || seed > graph.nodeCount() - 1 || threshold < 0 || threshold > 1) {
-            return -1;
-        }
+        Instrumentation.Probe probe = Instrumentation.operation("generations");
+        try {
+            if (seed <= 0 || seed > graph.nodeCount() - 1 || threshold < 0 || threshold > 1) {
+                return -1;
+            }
 
-        if (threshold == 0) {
-            return 0;
+            if (threshold == 0) {
+                return 0;
+            }
+            return spreadLevels(graph, seed, threshold);
+        } finally {
+            end(probe);
         }
+    }
 
-        int nodeNum = graph.nodeCount() - 1;
-        int targetCount = (int) Math.ceil(threshold * nodeNum);
+    /**
+     * Batch form of {@link #generations(int, double)}. The seeds are searched
+     * 64 at a time in one bit-parallel breadth-first search, which is much
+     * faster than one search per seed.
+     *
+     * @param seeds     the ids of the seed pages
+     * @param threshold the percentage of nodes to reach
+     * @return for every seed, what generations(seed, threshold) returns
+     */
+    public int[] generations(int[] seeds, double threshold) {
+        Instrumentation.Probe probe = Instrumentation.operation("generations");
+        try {
+            int[] result = new int[seeds.length];
+            Arrays.fill(result, -1);
+            if (threshold < 0 || threshold > 1) {
+                return result;
+            }
 
-        boolean[] checked = new boolean[nodeNum + 1];
-        Arrays.fill(checked, false);
-        checked[seed] = true;
-        int genCount = 0;
-
-        Queue<Integer> queue = new LinkedList<>();
-        queue.offer(seed);
-        int visitedCount = 1;
-        while (!queue.isEmpty() && visitedCount < targetCount) {
-            genCount++;
-            int breadthNodeNum = queue.size();
-            for (int i = 0; i < breadthNodeNum; i++) {
-                int curNode = queue.poll();
-                for (int neighbor : graph.neighbors(curNode)) {
-                    if (!checked[neighbor]) {
-                        checked[neighbor] = true;
-                        visitedCount++;
-                        queue.offer(neighbor);
-                    }
+            int[] valid = new int[seeds.length];
+            int validCount = 0;
+            for (int seed : seeds) {
+                if (seed > 0 && seed <= graph.nodeCount() - 1) {
+                    valid[validCount++] = seed;
                 }
             }
-            if (visitedCount >= targetCount) {
-                return genCount;
+            int[] levels = new int[validCount];
+            if (threshold > 0) {
+                int targetCount = (int) Math.ceil(threshold * (graph.nodeCount() - 1));
+                Instrumentation.Probe phase = Instrumentation.phase("bfs");
+                try {
+                    if (batchSearch == null) {
+                        batchSearch = new MultiSourceBFS(graph);
+                    }
+                    levels = batchSearch.levelsToReach(Arrays.copyOf(valid, validCount), targetCount);
+                } finally {
+                    Instrumentation.end(phase, graph);
+                }
             }
-        }
 
-        if (visitedCount >= targetCount) {
-            return genCount;
-        } else {
-            return -1;
+            for (int i = 0, j = 0; i < seeds.length; i++) {
+                if (seeds[i] > 0 && seeds[i] <= graph.nodeCount() - 1) {
+                    result[i] = levels[j++];
+                }
+            }
+            return result;
+        } finally {
+            end(probe);
         }
     }
 
-    @Override
-    public int degree(int n) {
-        if (n <= 0 || n >= graph.nodeCount()) {
-            return -1;
+    /**
+     * Simulate stochastic outbreaks from a seed on every core of the common
+     * ForkJoinPool. Unlike {@link #generations(int, double)}, which lets
+     * every edge transmit, each infected node infects each neighbor once
+     * with probability weight / 100 for the edge between them. The same
+     * randomSeed gives the same results on any number of cores.
+     *
+     * @param seed       the id of the first infected node
+     * @param trials     the number of independent outbreaks
+     * @param randomSeed the seed of the random generators
+     * @return the final size of every outbreak and the mean new cases of
+     *         every generation
+     * @throws IllegalArgumentException if the seed is not a node or trials is negative
+     */
+    public CascadeStats simulateOutbreaks(int seed, int trials, long randomSeed) {
+        Instrumentation.Probe probe = Instrumentation.operation("simulateOutbreaks");
+        try {
+            if (seed <= 0 || seed > graph.nodeCount() - 1) {
+                throw new IllegalArgumentException("No node " + seed);
+            }
+            if (trials < 0) {
+                throw new IllegalArgumentException("Negative trial count " + trials);
+            }
+            if (cascades == null) {
+                cascades = new CascadeSimulator(graph);
+            }
+            return cascades.simulate(seed, trials, randomSeed, ForkJoinPool.commonPool());
+        } finally {
+            end(probe);
         }
-        int[] neighbors = graph.neighbors(n);
-        return neighbors.length;
     }
 
-    @Override
-    public Collection<Integer> degreeNodes(int d) {
-        Set<Integer> nodes = new HashSet<>();
-        for (int i = 1; i < graph.nodeCount(); i++) {
-            int[] neighbors = graph.neighbors(i);
-            if (neighbors.length == d) {
-                nodes.add(i);
+    // Breadth-first spread from seed, counting levels until threshold of the nodes are reached
+    private int spreadLevels(Graph graph, int seed, double threshold) {
+        int nodeNum = graph.nodeCount() - 1;
+        int targetCount = (int) Math.ceil(threshold * nodeNum);
+        if (parallelSearch) {
+            Deque<ParallelBFS> idle = parallelSearchers;
+            ParallelBFS bfs = take(idle);
+            if (bfs == null) {
+                bfs = new ParallelBFS(this.graph, ForkJoinPool.commonPool());
+            }
+            bfs.use(graph);
+            Instrumentation.Probe phase = Instrumentation.phase("bfs");
+            try {
+                int levels = bfs.levelsToReach(seed, targetCount);
+                give(idle, bfs);
+                return levels;
+            } finally {
+                Instrumentation.end(phase, this.graph);
             }
         }
-        return nodes;
+        Deque<DirectionOptimizingBFS> idle = searchers;
+        DirectionOptimizingBFS bfs = take(idle);
+        if (bfs == null) {
+            bfs = new DirectionOptimizingBFS(this.graph, index().degrees());
+        }
+        bfs.use(graph);
+        Instrumentation.Probe phase = Instrumentation.phase("bfs");
+        try {
+            int levels = bfs.levelsToReach(seed, targetCount);
+            Instrumentation.scanned(phase, bfs.edgeChecks());
+            give(idle, bfs);
+            return levels;
+        } finally {
+            Instrumentation.end(phase, this.graph);
+        }
     }
 
-    @Override
-    public int generationsDegree(int seed, double threshold, int d) {
-        if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
-            return -1;
+    // An idle searcher, or null if every searcher is busy on another thread
+    private static <T> T take(Deque<T> idle) {
+        synchronized (idle) {
+            return idle.poll();
         }
-        GraphL copiedGraph = copyGraph();
+    }
 
-        Collection<Integer> removeNodes = degreeNodes(d);
-        if (removeNodes.isEmpty()) {
-            return -1;
-        } else if (removeNodes.contains(seed)) {
-            return 0;
+    // Return a searcher whose search completed, which leaves it clean for the next one
+    private static <T> void give(Deque<T> idle, T searcher) {
+        synchronized (idle) {
+            idle.push(searcher);
         }
-        copiedGraph = toRemoveNodes(copiedGraph, removeNodes);
-
-        int nodeNum = copiedGraph.nodeCount() - 1;
-        int targetCount = (int) Math.ceil(threshold * nodeNum);
+    }
 
-        boolean[] checked = new boolean[nodeNum + 1];
-        Arrays.fill(checked, false);
-        checked[seed] = true;
-        int genCount = 0;
-
-        Queue<Integer> q = new LinkedList<>();
-        q.offer(seed);
-        int checkedCount = 1;
-        while (!q.isEmpty() && checkedCount < targetCount) {
-            genCount++;
-            int breadthNodeNum = q.size();
-            for (int i = 0; i < breadthNodeNum; i++) {
-                int curNode = q.poll();
-                for (int neighbor : copiedGraph.neighbors(curNode)) {
-                    if (!checked[neighbor]) {
-                        checked[neighbor] = true;
-                        checkedCount++;
-                        q.offer(neighbor);
-                    }
-                }
-            }
-            if (checkedCount >= targetCount) {
-                return genCount;
+    @Override
+    public int degree(int n) {
+        Instrumentation.Probe probe = Instrumentation.operation("degree");
+        try {
+            if (n <= 0 || n >= graph.nodeCount()) {
+                return -1;
             }
+            return graph.degree(n);
+        } finally {
+            end(probe);
         }
+    }
 
-        if (checkedCount >= targetCount) {
-            return genCount;
-        } else {
-            return -1;
+    @Override
+    public Collection<Integer> degreeNodes(int d) {
+        Instrumentation.Probe probe = Instrumentation.operation("degreeNodes");
+        try {
+            return new IntSet(index().degreeNodes(d));
+        } finally {
+            end(probe);
         }
     }
 
-    private GraphL copyGraph() {
-        GraphL copiedGraph = new GraphL();
-        copiedGraph.init(graph.nodeCount());
-
-        for (int i = 1; i < graph.nodeCount(); i++) {
-            int [] neighbors = graph.neighbors(i);
-            for (int j = 0; j < neighbors.length; j++) {
-                int weight = graph.weight(i, neighbors[j]);
-                copiedGraph.addEdge(i, neighbors[j], weight);
+    // Degree and clustering coefficient index of the current graph
+    private NodeIndex index() {
+        if (index == null) {
+            Instrumentation.Probe phase = Instrumentation.phase("index");
+            Instrumentation.scanned(phase, graph.longEdgeCount());
+            try {
+                index = new NodeIndex(graph, ForkJoinPool.commonPool());
+            } finally {
+                Instrumentation.end(phase, graph);
             }
         }
-        return copiedGraph;
+        return index;
     }
 
-    private GraphL toRemoveNodes(GraphL graph, Collection<Integer> removeNodes) {
-        for (int i : removeNodes) {
-            int[] neighbors = graph.neighbors(i);
-            for (int j = 0; j < neighbors.length; j++) {
-                int neighbor = neighbors[j];
-                graph.removeEdge(i, neighbor);
-                graph.removeEdge(neighbor, i);
+    @Override
+    public int generationsDegree(int seed, double threshold, int d) {
+        Instrumentation.Probe probe = Instrumentation.operation("generationsDegree");
+        try {
+            if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
+                return -1;
             }
+            return generationsWithout(index().degreeNodes(d), seed, threshold);
+        } finally {
+            end(probe);
         }
-        return graph;
     }
 
-    private double avgDegreeWithRemovedNodes(GraphL graph) {
-        int edgeNum = 0;
-        int nodeNum = graph.nodeCount() - 1;
-        for (int i = 1; i <= nodeNum; i++) {
-            edgeNum += graph.neighbors(i).length;
+    // Spread levels with removeNodes taken out of the graph; the graph itself is not touched
+    private int generationsWithout(int[] removeNodes, int seed, double threshold) {
+        if (removeNodes.length == 0) {
+            return -1;
         }
+        MaskedGraph remaining = new MaskedGraph(graph, removeNodes);
+        if (remaining.isRemoved(seed)) {
+            return 0;
+        }
+        return spreadLevels(remaining, seed, threshold);
+    }
 
-        double avgDegreeRemovedNodes = (double) edgeNum / nodeNum;
-        return avgDegreeRemovedNodes;
+    // R0 with removeNodes taken out of the graph, or the plain R0 if there are none
+    private double rNumberWithout(int[] removeNodes) {
+        if (removeNodes.length == 0) {
+            return plainRNumber();
+        }
+        double avgDegreeRemovedNodes = (double) index().entriesWithout(removeNodes)
+                / (graph.nodeCount() - 1);
+        return tau * avgDegreeRemovedNodes / 100;
     }
 
     @Override
     public double rNumberDegree(int d) {
-        GraphL copiedGraph = copyGraph();
-        Collection<Integer> removeNodes = degreeNodes(d);
-        if (removeNodes.isEmpty()) {
-            return rNumber();
+        Instrumentation.Probe probe = Instrumentation.operation("rNumberDegree");
+        try {
+            return rNumberWithout(index().degreeNodes(d));
+        } finally {
+            end(probe);
         }
-        copiedGraph = toRemoveNodes(copiedGraph, removeNodes);
-        double avgDegreeRemovedNodes = avgDegreeWithRemovedNodes(copiedGraph);
-        double theD = 1.0;
-        double rNumberDegree = tau * avgDegreeRemovedNodes * theD / 100;
-        return rNumberDegree;
     }
 
     @Override
     public double clustCoeff(int n) {
-        if (n <= 0 || n >= graph.nodeCount()) {
-            return -1;
-        }
-        int[] neighbors = graph.neighbors(n);
-        int nodeDegree = neighbors.length;
-        if (nodeDegree <= 1) {
-            return 0;
-        }
-
-        int t = 0;
-        for (int i = 0; i < nodeDegree; i++) {
-            for (int j = i + 1; j < nodeDegree; j++) {
-                if (graph.hasEdge(neighbors[i], neighbors[j])) {
-                    t++;
-                }
+        Instrumentation.Probe probe = Instrumentation.operation("clustCoeff");
+        try {
+            if (n <= 0 || n >= graph.nodeCount()) {
+                return -1;
             }
+            return index().clustCoeff(n);
+        } finally {
+            end(probe);
         }
-        double coeff = (double) (2 * t) / (nodeDegree * (nodeDegree - 1));
-        return coeff;
     }
 
     @Override
     public Collection<Integer> clustCoeffNodes(double low, double high) {
-        Set<Integer> clustCoeffNodes = new HashSet<>();
-        for (int i = 1; i < graph.nodeCount(); i++) {
-            double coeff = clustCoeff(i);
-            if (inRange(coeff, high, low)) {
-                clustCoeffNodes.add(i);
-            }
+        Instrumentation.Probe probe = Instrumentation.operation("clustCoeffNodes");
+        try {
+            return new IntSet(ccRangeNodes(low, high));
+        } finally {
+            end(probe);
         }
-        return clustCoeffNodes;
     }
 
-    private static boolean inRange(double coeff, double upper, double lower) {
-        double e = 0.01;
-        return coeff >= lower - e && coeff <= upper + e;
+    private int[] ccRangeNodes(double low, double high) {
+        return index().clustCoeffNodes(low - CC_PRECISION, high + CC_PRECISION);
     }
 
     @Override
     public int generationsCC(int seed, double threshold, double low, double high) {
-        if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
-            return -1;
-        }
-        GraphL copiedGraph = copyGraph();
-
-        Collection<Integer> removeNodes = clustCoeffNodes(low, high);
-        if (removeNodes.isEmpty()) {
-            return -1;
-        } else if (removeNodes.contains(seed)) {
-            return 0;
-        }
-        copiedGraph = toRemoveNodes(copiedGraph, removeNodes);
-
-        int nodeNum = copiedGraph.nodeCount() - 1;
-        int targetCount = (int) Math.ceil(threshold * nodeNum);
-
-        boolean[] checked = new boolean[nodeNum + 1];
-        Arrays.fill(checked, false);
-        checked[seed] = true;
-        int genCount = 0;
-
-        Queue<Integer> q = new LinkedList<>();
-        q.offer(seed);
-        int checkedCount = 1;
-        while (!q.isEmpty() && checkedCount < targetCount) {
-            genCount++;
-            int breadthNodeNum = q.size();
-            for (int i = 0; i < breadthNodeNum; i++) {
-                int curNode = q.poll();
-                for (int neighbor : copiedGraph.neighbors(curNode)) {
-                    if (!checked[neighbor]) {
-                        checked[neighbor] = true;
-                        checkedCount++;
-                        q.offer(neighbor);
-                    }
-                }
-            }
-            if (checkedCount >= targetCount) {
-                return genCount;
+        Instrumentation.Probe probe = Instrumentation.operation("generationsCC");
+        try {
+            if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
+                return -1;
             }
-        }
-
-        if (checkedCount >= targetCount) {
-            return genCount;
-        } else {
-            return -1;
+            return generationsWithout(ccRangeNodes(low, high), seed, threshold);
+        } finally {
+            end(probe);
         }
     }
 
     @Override
     public double rNumberCC(double low, double high) {
-        GraphL copiedGraph = copyGraph();
-        Collection<Integer> removeNodes = clustCoeffNodes(low, high);
-        if (removeNodes.isEmpty()) {
-            return rNumber();
+        Instrumentation.Probe probe = Instrumentation.operation("rNumberCC");
+        try {
+            return rNumberWithout(ccRangeNodes(low, high));
+        } finally {
+            end(probe);
         }
-        copiedGraph = toRemoveNodes(copiedGraph, removeNodes);
-        double avgDegreeRemovedNodes = avgDegreeWithRemovedNodes(copiedGraph);
-        double theD = 1.0;
-        double rNumberCC = tau * avgDegreeRemovedNodes * theD / 100;
-        return rNumberCC;
     }
 
     @Override
     public Collection<Integer> highDegLowCCNodes(int lowBoundDeg, double upBoundCC) {
-        Set<Integer> highDegLowCCNodes = new HashSet<>();
-        for (int i = 1; i < graph.nodeCount(); i++) {
-            int nodeDegree = degree(i);
-            double nodeCoeff = clustCoeff(i);
-            if (nodeDegree >= lowBoundDeg && inRange(nodeCoeff, upBoundCC, 0)) {
-                highDegLowCCNodes.add(i);
-            }
+        Instrumentation.Probe probe = Instrumentation.operation("highDegLowCCNodes");
+        try {
+            return new IntSet(highDegLowCCRange(lowBoundDeg, upBoundCC));
+        } finally {
+            end(probe);
         }
-        return highDegLowCCNodes;
+    }
+
+    private int[] highDegLowCCRange(int lowBoundDeg, double upBoundCC) {
+        return index().highDegLowCCNodes(lowBoundDeg, upBoundCC + CC_PRECISION);
     }
 
     @Override
     public int generationsHighDegLowCC(int seed, double threshold,
                                        int lowBoundDegree, double upBoundCC) {
-        if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
-            return -1;
+        Instrumentation.Probe probe = Instrumentation.operation("generationsHighDegLowCC");
+        try {
+            if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
+                return -1;
+            }
+            return generationsWithout(highDegLowCCRange(lowBoundDegree, upBoundCC), seed, threshold);
+        } finally {
+            end(probe);
         }
-        GraphL copiedGraph = copyGraph();
+    }
 
-        Collection<Integer> removeNodes = highDegLowCCNodes(lowBoundDegree, upBoundCC);
-        if (removeNodes.isEmpty()) {
-            return -1;
-        }
-        if (removeNodes.contains(seed)) {
-            return 0;
+    @Override
+    public double rNumberDegCC(int lowBoundDegree, double upBoundCC) {
+        Instrumentation.Probe probe = Instrumentation.operation("rNumberDegCC");
+        try {
+            return rNumberWithout(highDegLowCCRange(lowBoundDegree, upBoundCC));
+        } finally {
+            end(probe);
         }
-        copiedGraph = toRemoveNodes(copiedGraph, removeNodes);
+    }
 
-        int nodeNum = copiedGraph.nodeCount() - 1;
-        int targetCount = (int) Math.ceil(threshold * nodeNum);
+    /**
+     * Remove the nodes of each degree from minDegree to maxDegree in turn,
+     * as {@link #rNumberDegree} and {@link #generationsDegree} do, and
+     * report both for every degree. The searches run in parallel on the
+     * common ForkJoinPool.
+     *
+     * @param seed      the id of the seed page
+     * @param threshold the percentage of nodes to reach
+     * @param minDegree the first degree
+     * @param maxDegree the last degree
+     * @return one row per degree, in increasing order
+     * @throws IllegalArgumentException if minDegree is above maxDegree
+     */
+    public InterventionSweep sweepDegree(int seed, double threshold, int minDegree, int maxDegree) {
+        Instrumentation.Probe probe = Instrumentation.operation("sweepDegree");
+        try {
+            if (minDegree > maxDegree) {
+                throw new IllegalArgumentException("Empty degree range " + minDegree + ".." + maxDegree);
+            }
+            int rows = maxDegree - minDegree + 1;
+            double[] degrees = new double[rows];
+            int[][] removals = new int[rows][];
+            for (int i = 0; i < rows; i++) {
+                degrees[i] = minDegree + i;
+                removals[i] = index().degreeNodes(minDegree + i);
+            }
+            return sweep(false, degrees, degrees, removals, seed, threshold);
+        } finally {
+            end(probe);
+        }
+    }
 
-        boolean[] checked = new boolean[nodeNum + 1];
-        Arrays.fill(checked, false);
-        checked[seed] = true;
-        int genCount = 0;
-
-        Queue<Integer> q = new LinkedList<>();
-        q.offer(seed);
-        int checkedCount = 1;
-        while (!q.isEmpty() && checkedCount < targetCount) {
-            genCount++;
-            int breadthNodeNum = q.size();
-            for (int i = 0; i < breadthNodeNum; i++) {
-                int curNode = q.poll();
-                for (int neighbor : copiedGraph.neighbors(curNode)) {
-                    if (!checked[neighbor]) {
-                        checked[neighbor] = true;
-                        checkedCount++;
-                        q.offer(neighbor);
-                    }
-                }
+    /**
+     * Remove the nodes of each clustering coefficient interval in turn, as
+     * {@link #rNumberCC} and {@link #generationsCC} do, and report both for
+     * every interval. The searches run in parallel on the common
+     * ForkJoinPool.
+     *
+     * @param seed      the id of the seed page
+     * @param threshold the percentage of nodes to reach
+     * @param lows      the lower bound (inclusive) of each interval
+     * @param highs     the upper bound (inclusive) of each interval
+     * @return one row per interval, in the order given
+     * @throws IllegalArgumentException if the arrays differ in length
+     */
+    public InterventionSweep sweepCC(int seed, double threshold, double[] lows, double[] highs) {
+        Instrumentation.Probe probe = Instrumentation.operation("sweepCC");
+        try {
+            if (lows.length != highs.length) {
+                throw new IllegalArgumentException(lows.length + " low bounds but "
+                        + highs.length + " high bounds");
             }
-            if (checkedCount >= targetCount) {
-                return genCount;
+            int[][] removals = new int[lows.length][];
+            for (int i = 0; i < lows.length; i++) {
+                removals[i] = ccRangeNodes(lows[i], highs[i]);
             }
+            return sweep(true, lows.clone(), highs.clone(), removals, seed, threshold);
+        } finally {
+            end(probe);
         }
+    }
 
-        if (checkedCount >= targetCount) {
-            return genCount;
+    // R0 of every removal set on this thread, then their searches in parallel
+    private InterventionSweep sweep(boolean interval, double[] low, double[] high,
+                                    int[][] removals, int seed, double threshold) {
+        int rows = removals.length;
+        int[] removed = new int[rows];
+        double[] rNumbers = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            removed[i] = removals[i].length;
+            rNumbers[i] = rNumberWithout(removals[i]);
+        }
+        int[] levels = new int[rows];
+        if (seed <= 0 || seed >= graph.nodeCount() || threshold <= 0 || threshold > 1) {
+            Arrays.fill(levels, -1);
         } else {
-            return -1;
+            Parallel.forEach(ForkJoinPool.commonPool(), rows,
+                    i -> levels[i] = generationsWithout(removals[i], seed, threshold));
         }
+        return new InterventionSweep(interval, low, high, removed, rNumbers, levels);
     }
 
-    @Override
-    public double rNumberDegCC(int lowBoundDegree, double upBoundCC) {
-        GraphL copiedGraph = copyGraph();
-        Collection<Integer> removeNodes = highDegLowCCNodes(lowBoundDegree, upBoundCC);
-        if (removeNodes.isEmpty()) {
-            return rNumber();
-        }
-        copiedGraph = toRemoveNodes(copiedGraph, removeNodes);
-        double avgDegreeRemovedNodes = avgDegreeWithRemovedNodes(copiedGraph);
-        double theD = 1.0;
-        double rNumberDegCC = tau * avgDegreeRemovedNodes * theD / 100;
-        return rNumberDegCC;
+    /**
+     * Percolation curve of the degree strategy: nodes are removed highest
+     * degree first, ties by id.
+     *
+     * @return for every k from 0 to the number of nodes, the fraction of the
+     *         nodes in the largest component once k nodes are removed
+     */
+    public double[] percolationDegree() {
+        Instrumentation.Probe probe = Instrumentation.operation("percolationDegree");
+        try {
+            return percolation(index().byDecreasingDegree());
+        } finally {
+            end(probe);
+        }
+    }
+
+    /**
+     * Percolation curve of the clustering coefficient strategy: nodes are
+     * removed lowest coefficient first, ties by id.
+     *
+     * @return for every k from 0 to the number of nodes, the fraction of the
+     *         nodes in the largest component once k nodes are removed
+     */
+    public double[] percolationCC() {
+        Instrumentation.Probe probe = Instrumentation.operation("percolationCC");
+        try {
+            return percolation(index().byIncreasingCoeff());
+        } finally {
+            end(probe);
+        }
+    }
+
+    /**
+     * Percolation curve of the high degree, low clustering coefficient
+     * strategy: nodes are removed by decreasing number of unlinked neighbor
+     * pairs, degree * (degree - 1) / 2 * (1 - cc), ties by id.
+     *
+     * @return for every k from 0 to the number of nodes, the fraction of the
+     *         nodes in the largest component once k nodes are removed
+     */
+    public double[] percolationDegCC() {
+        Instrumentation.Probe probe = Instrumentation.operation("percolationDegCC");
+        try {
+            return percolation(index().byDecreasingDegCC());
+        } finally {
+            end(probe);
+        }
+    }
+
+    // Largest component fractions as the nodes are removed in order
+    private double[] percolation(int[] order) {
+        Instrumentation.Probe phase = Instrumentation.phase("percolation");
+        Instrumentation.scanned(phase, graph.longEdgeCount());
+        int[] giant;
+        try {
+            giant = new Percolation(graph).giantSizes(order);
+        } finally {
+            Instrumentation.end(phase, graph);
+        }
+        double[] curve = new double[giant.length];
+        for (int k = 0; k < giant.length; k++) {
+            curve[k] = (double) giant[k] / Math.max(1, order.length);
+        }
+        return curve;
     }
 }
@@ -1,14 +1,28 @@
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
 public class InformationSpreadTest {
     private InformationSpread informationSpread;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Before
     public void setUp() {
         this.informationSpread = new InformationSpread();
@@ -305,4 +319,984 @@ public class InformationSpreadTest {
         assertEquals(informationSpread.rNumber(),
                 informationSpread.rNumberDegCC(250, 3.0), 0.01);
     }
+
+    @Test
+    public void testCompressedGraphMatchesLinked() {
+        InformationSpread compressed = new InformationSpread(true);
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        assertEquals(8, compressed.loadGraphFromDataSet("test_graph.mtx", 0.55));
+
+        for (int id = 1; id <= 12; id++) {
+            assertArrayEquals(informationSpread.getNeighbors(id), compressed.getNeighbors(id));
+        }
+        assertEquals(Arrays.asList(1, 3), compressed.path(1, 3));
+        assertTrue(compressed.path(6, 9).isEmpty());
+        assertEquals(informationSpread.avgDegree(), compressed.avgDegree(), 0.001);
+        assertEquals(2, compressed.generations(1, 0.3));
+        assertEquals(0.55 * 10 / 12, compressed.rNumberDegree(1), 0.01);
+        assertEquals(informationSpread.highDegLowCCNodes(2, 0.5),
+                compressed.highDegLowCCNodes(2, 0.5));
+    }
+
+    @Test
+    public void testLoadLargeGraphBothModes() {
+        InformationSpread compressed = new InformationSpread(true);
+        int nodes = informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.5);
+        assertEquals(nodes, compressed.loadGraphFromDataSet("socfb-American75.mtx", 0.5));
+        assertEquals(informationSpread.avgDegree(), compressed.avgDegree(), 0.0);
+        assertArrayEquals(informationSpread.getNeighbors(1), compressed.getNeighbors(1));
+    }
+
+    @Test
+    public void testSnapshotReload() throws Exception {
+        String snapshot = tempFolder.getRoot().toPath().resolve("test_graph.snap").toString();
+        assertEquals(8, informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55, snapshot));
+
+        InformationSpread restarted = new InformationSpread();
+        assertEquals(8, restarted.loadGraphFromDataSet("test_graph.mtx", 0.55, snapshot));
+        assertArrayEquals(new int[] {9, 12}, restarted.getNeighbors(10));
+        assertEquals(14.0 / 12.0, restarted.avgDegree(), 0.001);
+        assertEquals(0.55 * 14.0 / 12.0, restarted.rNumber(), 0.001);
+        assertEquals(Arrays.asList(1, 3), restarted.path(1, 3));
+
+        // a different tau must not reuse the stale snapshot
+        InformationSpread lowTau = new InformationSpread();
+        assertEquals(lowTau.loadGraphFromDataSet("test_graph.mtx", 0.01),
+                restarted.loadGraphFromDataSet("test_graph.mtx", 0.01, snapshot));
+        assertEquals(lowTau.avgDegree(), restarted.avgDegree(), 0.001);
+    }
+
+    @Test
+    public void testDamagedSnapshotIsParsedAgain() throws Exception {
+        Path snapshot = tempFolder.getRoot().toPath().resolve("damaged.snap");
+        Path source = Paths.get("test_graph.mtx");
+        assertEquals(8, informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55, snapshot.toString()));
+        byte[] intact = Files.readAllBytes(snapshot);
+        assertNotNull(GraphSnapshot.read(snapshot, source, 0.55));
+
+        // offsets start after the 56 byte header; the targets follow the 14 offsets
+        int[][] damage = {{56 + 4 * 5, 1000}, {56, 1}, {56 + 4 * 13, 0}, {56 + 4 * 14, 13},
+                {56 + 4 * 14, -1}};
+        for (int[] change : damage) {
+            ByteBuffer bytes = ByteBuffer.wrap(intact.clone()).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.putInt(change[0], change[1]);
+            Files.write(snapshot, bytes.array());
+            assertNull(GraphSnapshot.read(snapshot, source, 0.55));
+
+            InformationSpread restarted = new InformationSpread();
+            assertEquals(8, restarted.loadGraphFromDataSet("test_graph.mtx", 0.55, snapshot.toString()));
+            assertArrayEquals(new int[] {9, 12}, restarted.getNeighbors(10));
+            assertArrayEquals(intact, Files.readAllBytes(snapshot)); // written again
+        }
+    }
+
+    @Test
+    public void testNoSnapshotOfUnreadableFile() throws Exception {
+        File empty = tempFolder.newFile("empty.mtx"); // no header line
+        String snapshot = tempFolder.getRoot().toPath().resolve("empty.snap").toString();
+        InformationSpread fresh = new InformationSpread();
+        assertEquals(0, fresh.loadGraphFromDataSet(empty.getPath(), 0.5, snapshot));
+        assertFalse(new File(snapshot).exists());
+
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.5);
+        assertEquals(0, informationSpread.loadGraphFromDataSet(empty.getPath(), 0.5, snapshot));
+        assertFalse(new File(snapshot).exists());
+    }
+
+    @Test
+    public void testParallelLoadingMatchesSequential() {
+        InformationSpread parallel = new InformationSpread();
+        parallel.setParallelLoading(true);
+        String[] files = {"test_graph.mtx", "one_node_graph.mtx", "nothing_graph.mtx",
+            "socfb-American75.mtx"};
+        int[] lastIds = {12, 1, 0, 6386};
+        for (int f = 0; f < files.length; f++) {
+            int nodes = informationSpread.loadGraphFromDataSet(files[f], 0.3);
+            assertEquals(nodes, parallel.loadGraphFromDataSet(files[f], 0.3));
+            assertEquals(informationSpread.avgDegree(), parallel.avgDegree(), 0.0);
+            for (int id = 1; id <= lastIds[f]; id++) {
+                assertArrayEquals(informationSpread.getNeighbors(id), parallel.getNeighbors(id));
+            }
+        }
+    }
+
+    @Test
+    public void testClustCoeffRecomputedAfterReload() {
+        informationSpread.loadGraphFromDataSet("tri_graph.mtx", 0.01);
+        assertEquals(1.0, informationSpread.clustCoeff(1), 0.01);
+        assertEquals(-1, informationSpread.clustCoeff(4), 0.01);
+
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.01);
+        assertEquals(0.0, informationSpread.clustCoeff(1), 0.01);
+        assertEquals(0.0, informationSpread.clustCoeff(2), 0.01);
+        assertEquals(0.0, informationSpread.clustCoeff(6), 0.01);
+    }
+
+    @Test
+    public void testNodeSelectionAfterReload() {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 3, 7, 9, 10)),
+                informationSpread.degreeNodes(2));
+        assertTrue(informationSpread.clustCoeffNodes(0.5, 1.0).isEmpty());
+
+        informationSpread.loadGraphFromDataSet("tri_graph.mtx", 0.01);
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), informationSpread.degreeNodes(2));
+        assertTrue(informationSpread.degreeNodes(-1).isEmpty());
+        assertTrue(informationSpread.clustCoeffNodes(0.7, 0.2).isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)),
+                informationSpread.highDegLowCCNodes(2, 1.0));
+        assertTrue(informationSpread.highDegLowCCNodes(3, 1.0).isEmpty());
+    }
+
+    @Test
+    public void testStrategiesLeaveGraphUnchanged() {
+        InformationSpread compressed = new InformationSpread(true);
+        for (InformationSpread spread : new InformationSpread[] {informationSpread, compressed}) {
+            spread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+            assertEquals(1, spread.generationsDegree(1, 0.1, 1));
+            assertEquals(0.55 * 10 / 12, spread.rNumberDegree(1), 0.01);
+            assertEquals(0, spread.generationsHighDegLowCC(1, 0.1, 2, 0.3));
+            assertEquals(0, spread.rNumberDegCC(2, 0.3), 0.01);
+
+            assertArrayEquals(new int[] {2, 3}, spread.getNeighbors(1));
+            assertEquals(2, spread.degree(7));
+            assertEquals(14.0 / 12.0, spread.avgDegree(), 0.001);
+        }
+    }
+
+    @Test
+    public void testGenerationsLargeGraph() {
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.0);
+        assertEquals(3, informationSpread.generations(1, 0.5));
+        assertEquals(4, informationSpread.generations(1, 0.99));
+        assertEquals(-1, informationSpread.generations(1, 1.0));
+        assertEquals(5, informationSpread.generations(100, 0.99));
+        assertEquals(2, informationSpread.generations(5000, 0.5));
+    }
+
+    @Test
+    public void testBatchGenerationsMatchesSingle() {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        int[] seeds = {1, 2, 6, 8, -3, 13, 1, 12};
+        for (double threshold : new double[] {-0.5, 0, 0.1, 0.3, 0.5, 1.0, 1.5}) {
+            int[] batch = informationSpread.generations(seeds, threshold);
+            for (int i = 0; i < seeds.length; i++) {
+                assertEquals(informationSpread.generations(seeds[i], threshold), batch[i]);
+            }
+        }
+
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        int[] many = new int[150];
+        for (int i = 0; i < many.length; i++) {
+            many[i] = 1 + i * 41;
+        }
+        int[] batch = informationSpread.generations(many, 0.6);
+        for (int i = 0; i < many.length; i++) {
+            assertEquals(informationSpread.generations(many[i], 0.6), batch[i]);
+        }
+    }
+
+    @Test
+    public void testParallelSearchMatchesSequential() {
+        InformationSpread parallel = new InformationSpread(true);
+        parallel.setParallelSearch(true);
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        parallel.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        for (int seed : new int[] {1, 100, 2500, 6386}) {
+            for (double threshold : new double[] {0.1, 0.5, 0.9, 1.0}) {
+                assertEquals(informationSpread.generations(seed, threshold),
+                        parallel.generations(seed, threshold));
+            }
+        }
+        assertEquals(informationSpread.generationsDegree(1, 0.5, 20),
+                parallel.generationsDegree(1, 0.5, 20));
+        assertEquals(informationSpread.generationsHighDegLowCC(1, 0.5, 30, 0.2),
+                parallel.generationsHighDegLowCC(1, 0.5, 30, 0.2));
+
+        parallel.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        assertEquals(2, parallel.generations(1, 0.3));
+        assertEquals(-1, parallel.generations(1, 1.0));
+    }
+
+    @Test
+    public void testPathReusedAcrossQueriesAndReloads() {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        List<Integer> longest = Arrays.asList(1, 3, 7, 8, 9, 10, 12);
+        assertEquals(longest, informationSpread.path(1, 12));
+        assertEquals(Arrays.asList(1, 3, 7), informationSpread.path(1, 7));
+        assertEquals(Arrays.asList(6, 8, 9), informationSpread.path(6, 9));
+        List<Integer> reversed = new ArrayList<>(longest);
+        Collections.reverse(reversed);
+        assertEquals(reversed, informationSpread.path(12, 1));
+        assertEquals(longest, informationSpread.path(1, 12));
+
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        assertTrue(informationSpread.path(1, 12).isEmpty());
+        assertEquals(Arrays.asList(1, 3, 7), informationSpread.path(1, 7));
+    }
+
+    @Test
+    public void testBidirectionalPathsMatchOneSided() {
+        InformationSpread bidirectional = new InformationSpread(true);
+        bidirectional.setBidirectionalPaths(true);
+        bidirectional.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        assertEquals(Arrays.asList(1, 3, 7, 8, 9, 10, 12), bidirectional.path(1, 12));
+        assertEquals(Collections.singletonList(5), bidirectional.path(5, 5));
+        bidirectional.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        assertTrue(bidirectional.path(1, 12).isEmpty());
+        assertTrue(bidirectional.path(6, 9).isEmpty());
+
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        bidirectional.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        Random random = new Random(11);
+        for (int i = 0; i < 200; i++) {
+            int source = 1 + random.nextInt(6386);
+            int destination = 1 + random.nextInt(6386);
+            assertEquals(informationSpread.path(source, destination),
+                    bidirectional.path(source, destination));
+        }
+    }
+
+    @Test
+    public void testPathCacheHitsMissesAndEvictions() {
+        InformationSpread cached = new InformationSpread();
+        cached.setPathCacheBudget(2 * 13 * 4); // two trees of 13 nodes
+        cached.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        assertEquals(Arrays.asList(1, 3, 7, 8, 9, 10, 12), cached.path(1, 12));
+        assertEquals(Arrays.asList(1, 3, 7), cached.path(1, 7));
+        assertEquals(Arrays.asList(6, 8, 9), cached.path(6, 9));
+        assertEquals(Arrays.asList(12, 10, 9, 8, 7, 3, 1), cached.path(12, 1));
+        assertEquals(Arrays.asList(6, 8), cached.path(6, 8));
+        assertEquals(Arrays.asList(1, 3), cached.path(1, 3));
+        assertEquals(2, cached.pathCacheHits());
+        assertEquals(4, cached.pathCacheMisses());
+        assertEquals(2, cached.pathCacheEvictions());
+
+        cached.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        assertTrue(cached.path(1, 12).isEmpty());
+        assertEquals(Collections.singletonList(4), cached.path(4, 4));
+        assertEquals(5, cached.pathCacheMisses());
+
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        cached.setPathCacheBudget(5 * 6387 * 4); // five trees
+        cached.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            int source = 1 + random.nextInt(20);
+            int destination = 1 + random.nextInt(6386);
+            assertEquals(informationSpread.path(source, destination),
+                    cached.path(source, destination));
+        }
+        assertEquals(200, cached.pathCacheHits() + cached.pathCacheMisses());
+        assertTrue(cached.pathCacheEvictions() > 0);
+    }
+
+    @Test
+    public void testPathIndexMatchesSearch() throws Exception {
+        String index = tempFolder.getRoot().toPath().resolve("test_graph.chix").toString();
+        InformationSpread indexed = new InformationSpread();
+        indexed.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        indexed.buildPathIndex(index);
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        for (int source = 1; source <= 12; source++) {
+            for (int destination = 1; destination <= 12; destination++) {
+                assertEquals(informationSpread.path(source, destination),
+                        indexed.path(source, destination));
+            }
+        }
+
+        // a restart reads the stored index back
+        File file = new File(index);
+        assertTrue(file.setLastModified(1000));
+        InformationSpread restarted = new InformationSpread(true);
+        restarted.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        restarted.buildPathIndex(index);
+        assertEquals(1000, file.lastModified());
+        assertEquals(Arrays.asList(1, 3, 7, 8, 9, 10, 12), restarted.path(1, 12));
+        assertEquals(Arrays.asList(12, 10, 9, 8, 7, 3, 1), restarted.path(12, 1));
+
+        // an index of another graph is rebuilt, and reloading drops it
+        restarted.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        restarted.buildPathIndex(index);
+        assertEquals(Arrays.asList(1, 3), restarted.path(1, 3));
+        assertTrue(restarted.path(6, 9).isEmpty());
+        restarted.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        assertEquals(Arrays.asList(6, 8, 9), restarted.path(6, 9));
+    }
+
+    @Test
+    public void testCascadesAndPathIndexReadAnyBackend() throws Exception {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        GraphCSR large = ParallelGraphLoader.load(Paths.get("socfb-American75.mtx"), 30, pool).graph();
+        GraphOffHeap largeMapped = GraphOffHeap.copyOf(large);
+        CascadeStats heapStats = new CascadeSimulator(large).simulate(1, 500, 3, pool);
+        CascadeStats mappedStats = new CascadeSimulator(largeMapped).simulate(1, 500, 3, pool);
+        for (int t = 0; t < 500; t++) {
+            assertEquals(heapStats.finalSize(t), mappedStats.finalSize(t));
+        }
+        assertArrayEquals(heapStats.meanNewCases(), mappedStats.meanNewCases(), 0.0);
+
+        GraphCSR small = ParallelGraphLoader.load(Paths.get("test_graph.mtx"), 10, pool).graph();
+        GraphOffHeap smallMapped = GraphOffHeap.copyOf(small);
+        ContractionHierarchy heapIndex = ContractionHierarchy.build(small);
+        ContractionHierarchy mappedIndex = ContractionHierarchy.build(smallMapped);
+        for (int source = 1; source <= 12; source++) {
+            for (int destination = 1; destination <= 12; destination++) {
+                assertEquals(heapIndex.path(source, destination), mappedIndex.path(source, destination));
+            }
+        }
+        // the index identifies the graph by its rows, whatever holds them
+        Path file = tempFolder.getRoot().toPath().resolve("backend.chix");
+        heapIndex.write(file);
+        assertNotNull(ContractionHierarchy.read(file, smallMapped));
+        assertNull(ContractionHierarchy.read(file, largeMapped));
+    }
+
+    @Test
+    public void testBatchPathsMatchSinglePaths() {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        int[] sources = {1, 12, 6, 1, 4, 1, 6};
+        int[] destinations = {12, 1, 9, 7, 4, 3, 6};
+        List<List<Integer>> found = batchPaths(sources, destinations);
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(informationSpread.path(sources[i], destinations[i]), found.get(i));
+        }
+
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        int[] lengths = new int[2];
+        informationSpread.paths(new int[] {6, 1}, new int[] {9, 3},
+                (pair, path, length) -> lengths[pair] = length);
+        assertArrayEquals(new int[] {0, 2}, lengths);
+
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        Random random = new Random(15);
+        sources = new int[300];
+        destinations = new int[300];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = 1 + random.nextInt(30);
+            destinations[i] = 1 + random.nextInt(6386);
+        }
+        List<List<Integer>> batch = batchPaths(sources, destinations);
+        for (int i = 0; i < sources.length; i++) {
+            assertEquals(informationSpread.path(sources[i], destinations[i]), batch.get(i));
+        }
+    }
+
+    // Collect the paths streamed by a batch query, in pair order
+    private List<List<Integer>> batchPaths(int[] sources, int[] destinations) {
+        List<List<Integer>> found = new ArrayList<>(Collections.nCopies(sources.length, null));
+        informationSpread.paths(sources, destinations, (pair, path, length) -> {
+            List<Integer> nodes = new ArrayList<>();
+            for (int i = 0; i < length; i++) {
+                nodes.add(path[i]);
+            }
+            synchronized (found) {
+                found.set(pair, nodes);
+            }
+        });
+        return found;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchPathsRejectsUnevenPairs() {
+        informationSpread.paths(new int[] {1, 2}, new int[] {3}, (pair, path, length) -> { });
+    }
+
+    @Test
+    public void testSimulatedOutbreaksMatchCascadeProbabilities() {
+        // from 1, 2 and 3 are infected with 0.7 and 0.6, then each other with 0.8
+        informationSpread.loadGraphFromDataSet("tri_graph.mtx", 0.0);
+        CascadeStats stats = informationSpread.simulateOutbreaks(1, 100000, 16);
+        assertEquals(100000, stats.trials());
+        int[] sizes = stats.finalSizeDistribution();
+        assertEquals(4, sizes.length);
+        assertEquals(0, sizes[0]);
+        assertEquals(0.12, sizes[1] / 100000.0, 0.005);
+        assertEquals(0.092, sizes[2] / 100000.0, 0.005);
+        assertEquals(0.788, sizes[3] / 100000.0, 0.005);
+        assertEquals(2.668, stats.meanFinalSize(), 0.01);
+        assertEquals(0.788, stats.probabilityOfReaching(1.0), 0.005);
+        double[] newCases = stats.meanNewCases();
+        assertEquals(3, newCases.length);
+        assertEquals(1.0, newCases[0], 0.0);
+        assertEquals(1.3, newCases[1], 0.01);
+        assertEquals(0.368, newCases[2], 0.01);
+        assertEquals(stats.meanFinalSize(), stats.meanCumulativeCases()[2], 1e-9);
+
+        // the same random seed gives the same outbreaks
+        CascadeStats again = informationSpread.simulateOutbreaks(1, 100000, 16);
+        for (int trial = 0; trial < stats.trials(); trial++) {
+            assertEquals(stats.finalSize(trial), again.finalSize(trial));
+        }
+        assertArrayEquals(newCases, again.meanNewCases(), 0.0);
+
+        // an edge of weight 0.14 is the only way out of 6
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        assertEquals(0.86, informationSpread.simulateOutbreaks(6, 20000, 1)
+                .finalSizeDistribution()[1] / 20000.0, 0.01);
+    }
+
+    @Test
+    public void testSimulatedOutbreaksOnLargeGraph() {
+        int nodes = informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        CascadeStats stats = informationSpread.simulateOutbreaks(1, 500, 3);
+        int total = 0;
+        for (int count : stats.finalSizeDistribution()) {
+            total += count;
+        }
+        assertEquals(500, total);
+        double[] cumulative = stats.meanCumulativeCases();
+        assertEquals(stats.meanFinalSize(), cumulative[cumulative.length - 1], 1e-6);
+        assertTrue(stats.meanFinalSize() > 1 && stats.meanFinalSize() <= nodes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSimulatedOutbreaksRejectMissingSeed() {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        informationSpread.simulateOutbreaks(13, 10, 1);
+    }
+
+    @Test
+    public void testRemovalR0MatchesRecount() {
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        int nodes = 6386;
+        for (int d = 1; d < 200; d += 7) {
+            assertEquals(recountR0(0.3, nodes, informationSpread.degreeNodes(d)),
+                    informationSpread.rNumberDegree(d), 1e-9);
+        }
+        for (double low = 0; low < 1; low += 0.1) {
+            assertEquals(recountR0(0.3, nodes, informationSpread.clustCoeffNodes(low, low + 0.15)),
+                    informationSpread.rNumberCC(low, low + 0.15), 1e-9);
+        }
+        assertEquals(recountR0(0.3, nodes, informationSpread.highDegLowCCNodes(50, 0.2)),
+                informationSpread.rNumberDegCC(50, 0.2), 1e-9);
+    }
+
+    // R0 from every neighbor list once removed is taken out
+    private double recountR0(double tau, int nodes, Collection<Integer> removed) {
+        if (removed.isEmpty()) {
+            return informationSpread.rNumber();
+        }
+        Set<Integer> gone = new HashSet<>(removed);
+        long entries = 0;
+        for (int v = 1; v <= nodes; v++) {
+            if (gone.contains(v)) {
+                continue;
+            }
+            for (int w : informationSpread.getNeighbors(v)) {
+                if (!gone.contains(w)) {
+                    entries++;
+                }
+            }
+        }
+        return tau * entries / nodes;
+    }
+
+    @Test
+    public void testReusedSearchersFollowReloads() {
+        // searchers are kept between calls, so search a small graph before a large one
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.3);
+        informationSpread.generations(1, 0.5);
+        informationSpread.generationsDegree(1, 0.5, 2);
+        informationSpread.generations(new int[] {1, 2}, 0.5);
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        InformationSpread fresh = new InformationSpread();
+        fresh.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        int[] seeds = new int[40];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = 1 + 97 * i;
+        }
+        for (boolean parallel : new boolean[] {false, true}) {
+            informationSpread.setParallelSearch(parallel);
+            for (int seed : seeds) {
+                assertEquals(fresh.generations(seed, 0.5), informationSpread.generations(seed, 0.5));
+                assertEquals(fresh.generationsDegree(seed, 0.5, 3),
+                        informationSpread.generationsDegree(seed, 0.5, 3));
+            }
+        }
+        assertArrayEquals(fresh.generations(seeds, 0.5), informationSpread.generations(seeds, 0.5));
+        assertArrayEquals(fresh.generations(seeds, 0.9), informationSpread.generations(seeds, 0.9));
+    }
+
+    @Test
+    public void testSweepsMatchSingleCalls() throws Exception {
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        InterventionSweep degrees = informationSpread.sweepDegree(1, 0.5, 0, 80);
+        assertEquals(81, degrees.size());
+        for (int row = 0; row < degrees.size(); row++) {
+            assertEquals(row, (int) degrees.low(row));
+            assertEquals(informationSpread.degreeNodes(row).size(), degrees.removed(row));
+            assertEquals(informationSpread.rNumberDegree(row), degrees.rNumber(row), 0.0);
+            assertEquals(informationSpread.generationsDegree(1, 0.5, row), degrees.generations(row));
+        }
+
+        double[] lows = {0, 0.1, 0.2, 0.3, 0.5};
+        double[] highs = {0.1, 0.3, 0.25, 0.6, 1};
+        InterventionSweep intervals = informationSpread.sweepCC(7, 0.4, lows, highs);
+        for (int row = 0; row < lows.length; row++) {
+            assertEquals(informationSpread.clustCoeffNodes(lows[row], highs[row]).size(),
+                    intervals.removed(row));
+            assertEquals(informationSpread.rNumberCC(lows[row], highs[row]), intervals.rNumber(row), 0.0);
+            assertEquals(informationSpread.generationsCC(7, 0.4, lows[row], highs[row]),
+                    intervals.generations(row));
+        }
+
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.55);
+        StringBuilder csv = new StringBuilder();
+        informationSpread.sweepDegree(1, 1.5, 2, 3).writeCsv(csv);
+        assertEquals("degree,removed,r0,generations\n"
+                + "2,6," + informationSpread.rNumberDegree(2) + ",-1\n"
+                + "3,0," + informationSpread.rNumber() + ",-1\n", csv.toString());
+        csv.setLength(0);
+        informationSpread.sweepCC(1, 0.1, new double[] {0.5}, new double[] {1}).writeCsv(csv);
+        assertTrue(csv.toString().startsWith("low,high,removed,r0,generations\n0.5,1.0,"));
+    }
+
+    @Test
+    public void testPercolationCurvesMatchComponentSearch() {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        double[] curve = informationSpread.percolationDegree();
+        assertEquals(13, curve.length);
+        assertEquals(1.0, curve[0], 0.0);
+        assertEquals(0.0, curve[12], 0.0);
+        // 2 has degree 4 and 7, 8 and 9 degree 3; without 2, 7 and 8, 9-10-11-12 is left
+        assertEquals(4 / 12.0, curve[3], 1e-9);
+
+        checkPercolation(12, 1, Comparator.comparingInt(v -> -informationSpread.degree(v)),
+                informationSpread.percolationDegree());
+        checkPercolation(12, 1, Comparator.comparingDouble(informationSpread::clustCoeff),
+                informationSpread.percolationCC());
+        checkPercolation(12, 1, Comparator.comparingDouble(v -> -unlinkedPairs(v)),
+                informationSpread.percolationDegCC());
+
+        informationSpread.loadGraphFromDataSet("socfb-American75.mtx", 0.3);
+        checkPercolation(6386, 293, Comparator.comparingInt(v -> -informationSpread.degree(v)),
+                informationSpread.percolationDegree());
+        checkPercolation(6386, 293, Comparator.comparingDouble(informationSpread::clustCoeff),
+                informationSpread.percolationCC());
+        checkPercolation(6386, 293, Comparator.comparingDouble(v -> -unlinkedPairs(v)),
+                informationSpread.percolationDegCC());
+    }
+
+    private double unlinkedPairs(int v) {
+        double d = informationSpread.degree(v);
+        return d * (d - 1) / 2 * (1 - informationSpread.clustCoeff(v));
+    }
+
+    // Compare every step-th point of a curve with a component search, removing nodes in order
+    private void checkPercolation(int nodes, int step, Comparator<Integer> order, double[] curve) {
+        List<Integer> removal = new ArrayList<>();
+        for (int v = 1; v <= nodes; v++) {
+            removal.add(v);
+        }
+        removal.sort(order.thenComparingInt(v -> v));
+        assertEquals(nodes + 1, curve.length);
+        for (int k = 0; k <= nodes; k += step) {
+            Set<Integer> gone = new HashSet<>(removal.subList(0, k));
+            Set<Integer> seen = new HashSet<>();
+            int largest = 0;
+            for (int start = 1; start <= nodes; start++) {
+                if (gone.contains(start) || !seen.add(start)) {
+                    continue;
+                }
+                Deque<Integer> queue = new ArrayDeque<>(Collections.singleton(start));
+                int size = 0;
+                while (!queue.isEmpty()) {
+                    size++;
+                    for (int w : informationSpread.getNeighbors(queue.poll())) {
+                        if (!gone.contains(w) && seen.add(w)) {
+                            queue.add(w);
+                        }
+                    }
+                }
+                largest = Math.max(largest, size);
+            }
+            assertEquals((double) largest / nodes, curve[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void testMetricsRecordOperationsAndPhases() throws Exception {
+        SpreadMetrics metrics = SpreadMetrics.get();
+        metrics.reset();
+        metrics.setEnabled(true);
+        try {
+            informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+            int levels = informationSpread.generations(1, 0.5);
+            informationSpread.generations(1, 0.5);
+            informationSpread.clustCoeff(1);
+
+            SpreadMetrics.OperationStats generations = metrics.operation("generations");
+            SpreadMetrics.OperationStats bfs = metrics.operation("bfs");
+            assertEquals(2, generations.getCalls());
+            assertFalse(generations.isPhase());
+            assertTrue(bfs.isPhase());
+            assertEquals(2, bfs.getCalls());
+            assertTrue(bfs.getEdgesScanned() > 0);
+            // the first call also built the degree index, which read every edge
+            assertEquals(bfs.getEdgesScanned() + metrics.operation("index").getEdgesScanned(),
+                    generations.getEdgesScanned());
+            assertEquals(2, Arrays.stream(generations.getHistogram()).sum());
+            assertTrue(generations.getP50Nanos() <= generations.getP99Nanos());
+            assertTrue(generations.getP99Nanos() <= generations.getMaxNanos());
+            assertEquals(1, metrics.operation("loadGraphFromDataSet").getCalls());
+            assertEquals(1, metrics.operation("parse").getCalls());
+            assertEquals(1, metrics.operation("index").getCalls());
+            assertEquals(1, metrics.operation("clustCoeff").getCalls());
+            assertEquals(1, metrics.operation("triangles").getCalls());
+            assertTrue(metrics.operation("triangles").isPhase());
+
+            // the same numbers over JMX, one composite per operation
+            javax.management.openmbean.CompositeData[] operations =
+                    (javax.management.openmbean.CompositeData[]) java.lang.management.ManagementFactory
+                            .getPlatformMBeanServer().getAttribute(
+                                    new javax.management.ObjectName(SpreadMetrics.OBJECT_NAME), "Operations");
+            Map<String, Long> calls = new HashMap<>();
+            for (javax.management.openmbean.CompositeData operation : operations) {
+                calls.put((String) operation.get("name"), (Long) operation.get("calls"));
+            }
+            assertEquals(Long.valueOf(2), calls.get("generations"));
+            assertEquals(Long.valueOf(1), calls.get("triangles"));
+
+            // nothing is recorded once disabled
+            metrics.setEnabled(false);
+            assertEquals(levels, informationSpread.generations(1, 0.5));
+            assertEquals(2, metrics.operation("generations").getCalls());
+        } finally {
+            metrics.setEnabled(false);
+            metrics.reset();
+        }
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1);
+        File dump = tempFolder.newFile("spread.jfr");
+        try (jdk.jfr.Recording recording = new jdk.jfr.Recording()) {
+            recording.enable("InformationSpread.Operation");
+            recording.enable("InformationSpread.Phase");
+            recording.start();
+            informationSpread.generations(1, 0.5);
+            recording.stop();
+            recording.dump(dump.toPath());
+        }
+        // outside a recording, with metrics off, probes are not even made
+        assertNull(Instrumentation.operation("generations"));
+
+        Map<String, jdk.jfr.consumer.RecordedEvent> events = new HashMap<>();
+        for (jdk.jfr.consumer.RecordedEvent event : jdk.jfr.consumer.RecordingFile.readAllEvents(dump.toPath())) {
+            events.put(event.getString("name"), event);
+        }
+        jdk.jfr.consumer.RecordedEvent generations = events.get("generations");
+        jdk.jfr.consumer.RecordedEvent bfs = events.get("bfs");
+        assertEquals("InformationSpread.Operation", generations.getEventType().getName());
+        assertEquals("InformationSpread.Phase", bfs.getEventType().getName());
+        assertEquals(12, generations.getInt("nodes"));
+        assertEquals(informationSpread.avgDegree() * 12, generations.getLong("edges"), 1e-9);
+        assertTrue(bfs.getLong("edgesScanned") > 0);
+        assertEquals(bfs.getLong("edgesScanned") + events.get("index").getLong("edgesScanned"),
+                generations.getLong("edgesScanned"));
+    }
+
+    @Test
+    public void testBitMatrixMatchesList() {
+        // a dense community with a few self-loops, stored both ways like loaded data;
+        // rows of 10 words span two of the matrix's running counts
+        int n = 600;
+        Random random = new Random(7);
+        GraphL list = new GraphL();
+        GraphM matrix = new GraphM();
+        list.init(n);
+        matrix.init(n);
+        for (int v = 0; v < n; v++) {
+            for (int w = v; w < n; w++) {
+                if (random.nextDouble() < (v == w ? 0.05 : 0.3)) {
+                    int weight = 1 + random.nextInt(100);
+                    list.addEdge(v, w, weight);
+                    matrix.addEdge(v, w, weight);
+                    list.addEdge(w, v, weight);
+                    matrix.addEdge(w, v, weight);
+                }
+            }
+        }
+        // take out some edges and reweight others, so the weight table moves entries around
+        for (int i = 0; i < 2000; i++) {
+            int v = random.nextInt(n);
+            int w = random.nextInt(n);
+            if (random.nextBoolean()) {
+                list.removeEdge(v, w);
+                matrix.removeEdge(v, w);
+                list.removeEdge(w, v);
+                matrix.removeEdge(w, v);
+            } else if (list.hasEdge(v, w)) {
+                list.addEdge(v, w, 50);
+                matrix.addEdge(v, w, 50);
+                list.addEdge(w, v, 50);
+                matrix.addEdge(w, v, 50);
+            }
+        }
+
+        // GraphL counts a reweighted edge again, so count its lists instead
+        int entries = 0;
+        for (int v = 0; v < n; v++) {
+            int[] expected = list.neighbors(v);
+            entries += expected.length;
+            Arrays.sort(expected);
+            assertArrayEquals(expected, matrix.neighbors(v));
+            for (int w = 0; w < n; w++) {
+                assertEquals(list.hasEdge(v, w), matrix.hasEdge(v, w));
+                assertEquals(list.weight(v, w), matrix.weight(v, w));
+            }
+        }
+        assertEquals(entries, matrix.edgeCount());
+        assertArrayEquals(TriangleCounter.clusteringCoefficients(list, java.util.concurrent.ForkJoinPool.commonPool()),
+                TriangleCounter.clusteringCoefficients(matrix, java.util.concurrent.ForkJoinPool.commonPool()), 1e-12);
+    }
+
+    @Test
+    public void testHubLookupsMatchEdges() {
+        // hubs 1 and 2 far above the table threshold, the other rows below it
+        int n = 2000;
+        Random random = new Random(11);
+        GraphL list = new GraphL();
+        list.init(n);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int v = random.nextInt(4) < 3 ? 1 + random.nextInt(2) : random.nextInt(n);
+            int w = random.nextInt(n);
+            long key = (long) v * n + w;
+            if (random.nextInt(5) == 0) {
+                list.removeEdge(v, w);
+                expected.remove(key);
+            } else {
+                int weight = 1 + random.nextInt(100);
+                list.addEdge(v, w, weight);
+                expected.put(key, weight);
+            }
+        }
+        assertTrue(list.neighbors(1).length > 10 * HubTable.HUB_DEGREE);
+        GraphCSR compressed = new GraphCSR(list);
+        for (int v : new int[] {0, 1, 2, 3, 1999}) {
+            for (int w = 0; w < n; w++) {
+                int weight = expected.getOrDefault((long) v * n + w, 0);
+                assertEquals(weight, list.weight(v, w));
+                assertEquals(weight, compressed.weight(v, w));
+                assertEquals(weight != 0, list.hasEdge(v, w));
+                assertEquals(weight != 0, compressed.hasEdge(v, w));
+            }
+        }
+        int[] row = list.neighbors(1);
+        for (int i = 1; i < row.length; i++) {
+            assertTrue(row[i - 1] < row[i]);
+        }
+        // -1 marks a free slot of a hub table and must not be found there
+        assertEquals(0, list.weight(1, -1));
+        assertFalse(list.hasEdge(1, -1));
+        assertFalse(compressed.hasEdge(1, -1));
+    }
+
+    @Test
+    public void testCursorsMatchNeighbors() {
+        int n = 300;
+        Random random = new Random(5);
+        GraphL list = new GraphL();
+        GraphM matrix = new GraphM();
+        list.init(n);
+        matrix.init(n);
+        for (int i = 0; i < 6000; i++) {
+            int v = random.nextInt(n);
+            int w = random.nextInt(3) == 0 ? random.nextInt(n) : random.nextInt(10); // 0 .. 9 are hubs
+            int weight = 1 + random.nextInt(100);
+            list.addEdge(v, w, weight);
+            matrix.addEdge(v, w, weight);
+        }
+        GraphCSR compressed = new GraphCSR(list);
+        Graph masked = new MaskedGraph(compressed, new int[] {3, 7, 42, 299});
+        int maskedEntries = 0;
+        for (int v = 0; v < n; v++) {
+            maskedEntries += masked.neighbors(v).length;
+        }
+        assertEquals(maskedEntries, masked.edgeCount());
+        for (Graph graph : new Graph[] {list, matrix, compressed, masked}) {
+            NeighborCursor cursor = graph.cursor();
+            for (int v = 0; v < n; v++) {
+                int[] expected = graph.neighbors(v);
+                assertEquals(expected.length, graph.degree(v));
+                cursor.reset(v);
+                assertEquals(expected.length, cursor.end() - cursor.start());
+                for (int i = 0; i < expected.length; i++) {
+                    int at = cursor.start() + i;
+                    assertEquals(expected[i], cursor.ids()[at]);
+                    assertEquals(graph.weight(v, expected[i]), cursor.weight(at));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOffHeapGraphMatchesCompressed() throws Exception {
+        int n = 500;
+        Random random = new Random(8);
+        GraphL list = new GraphL();
+        list.init(n);
+        for (int i = 0; i < 8000; i++) {
+            int v = random.nextInt(n);
+            int w = random.nextInt(4) == 0 ? random.nextInt(3) : random.nextInt(n); // 0 .. 2 are hubs
+            list.addEdge(v, w, 1 + random.nextInt(100));
+        }
+        list.setValue(4, "four");
+        GraphCSR compressed = new GraphCSR(list);
+        Path file = tempFolder.getRoot().toPath().resolve("random.graph");
+        GraphOffHeap.write(compressed, file);
+        // chunks of 16 values, so rows and searches cross chunk ends
+        GraphOffHeap mapped = GraphOffHeap.open(file, 4);
+        GraphOffHeap copied = GraphOffHeap.copyOf(list);
+        assertEquals("four", copied.getValue(4));
+        assertNull(mapped.getValue(4));
+        for (Graph graph : new Graph[] {mapped, copied}) {
+            assertEquals(n, graph.nodeCount());
+            assertEquals(list.edgeCount(), graph.edgeCount());
+            NeighborCursor cursor = graph.cursor();
+            for (int v = 0; v < n; v++) {
+                int[] expected = compressed.neighbors(v);
+                assertArrayEquals(expected, graph.neighbors(v));
+                assertEquals(expected.length, graph.degree(v));
+                cursor.reset(v);
+                assertEquals(expected.length, cursor.end() - cursor.start());
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i], cursor.ids()[cursor.start() + i]);
+                    assertEquals(compressed.weight(v, expected[i]), cursor.weight(cursor.start() + i));
+                }
+                for (int w = 0; w < n; w += 7) {
+                    assertEquals(compressed.weight(v, w), graph.weight(v, w));
+                    assertEquals(compressed.hasEdge(v, w), graph.hasEdge(v, w));
+                }
+            }
+        }
+        try {
+            mapped.addEdge(1, 2, 3);
+            fail("an off-heap graph is read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // an edge count past the int range is reported in full, never clamped
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN)
+                    .putLong(0, 3_000_000_000L);
+            channel.write(count, 16);
+        }
+        GraphOffHeap huge = GraphOffHeap.open(file);
+        assertEquals(3_000_000_000L, huge.longEdgeCount());
+        try {
+            huge.edgeCount();
+            fail("the edge count does not fit an int");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(list.edgeCount(), list.longEdgeCount());
+
+        InformationSpread offHeap = new InformationSpread();
+        offHeap.setOffHeap(true);
+        assertEquals(informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.3),
+                offHeap.loadGraphFromDataSet("test_graph.mtx", 0.3));
+        assertEquals(informationSpread.avgDegree(), offHeap.avgDegree(), 0.0);
+        assertEquals(informationSpread.rNumber(), offHeap.rNumber(), 0.0);
+        assertEquals(informationSpread.path(1, 9), offHeap.path(1, 9));
+        for (int id = 1; id <= 12; id++) {
+            assertArrayEquals(informationSpread.getNeighbors(id), offHeap.getNeighbors(id));
+            assertEquals(informationSpread.generations(id, 0.5), offHeap.generations(id, 0.5));
+            assertEquals(informationSpread.clustCoeff(id), offHeap.clustCoeff(id), 0.0);
+        }
+        assertEquals(informationSpread.generationsDegree(1, 0.5, 2),
+                offHeap.generationsDegree(1, 0.5, 2));
+        assertArrayEquals(informationSpread.percolationDegree(), offHeap.percolationDegree(), 0.0);
+    }
+
+    @Test
+    public void testOffHeapGraphStaysOffHeap() throws Exception {
+        InformationSpread offHeap = new InformationSpread();
+        offHeap.setOffHeap(true);
+        Path heapSnapshot = tempFolder.getRoot().toPath().resolve("heap.snap");
+        Path mappedSnapshot = tempFolder.getRoot().toPath().resolve("mapped.snap");
+        assertEquals(informationSpread.loadGraphFromDataSet("test_graph.mtx", 0.1, heapSnapshot.toString()),
+                offHeap.loadGraphFromDataSet("test_graph.mtx", 0.1, mappedSnapshot.toString()));
+        assertArrayEquals(Files.readAllBytes(heapSnapshot), Files.readAllBytes(mappedSnapshot));
+
+        CascadeStats heapStats = informationSpread.simulateOutbreaks(1, 2000, 5);
+        CascadeStats mappedStats = offHeap.simulateOutbreaks(1, 2000, 5);
+        assertArrayEquals(heapStats.finalSizeDistribution(), mappedStats.finalSizeDistribution());
+
+        informationSpread.buildPathIndex();
+        offHeap.buildPathIndex();
+        for (int source = 1; source <= 12; source++) {
+            for (int destination = 1; destination <= 12; destination++) {
+                assertEquals(informationSpread.path(source, destination), offHeap.path(source, destination));
+            }
+        }
+    }
+
+    @Test
+    public void testOffHeapLoaderMatchesParallelLoader() throws Exception {
+        // repeated edges, a self loop, a weight 0 edge, vertex 0 and a long row
+        File file = tempFolder.newFile("repeats.mtx");
+        StringBuilder text = new StringBuilder("% comment\n9 9\n");
+        text.append("1 2 0.5\n2 1 0.7\n1 2 0.9\n3 3 0.4\n4 5 0.001\n0 6 0.8\n7 8 0.2\n");
+        for (int v = 9; v >= 2; v--) {
+            text.append("1 ").append(v).append(" 0.").append(v).append('\n');
+        }
+        Files.write(file.toPath(), text.toString().getBytes());
+
+        for (double tau : new double[] {0, 30}) {
+            // tiny chunks and batches split rows across both
+            assertOffHeapLoad(file.toPath(), tau, 3, 5);
+            assertOffHeapLoad(Paths.get("test_graph.mtx"), tau, 3, 5);
+            assertOffHeapLoad(Paths.get("socfb-American75.mtx"), tau, 16, 1000);
+            assertOffHeapLoad(Paths.get("socfb-American75.mtx"), tau, GraphOffHeap.CHUNK_SHIFT, 1 << 20);
+        }
+        assertNull(OffHeapGraphLoader.load(tempFolder.newFile("empty.mtx").toPath(), 0));
+    }
+
+    private void assertOffHeapLoad(Path file, double tau, int shift, int batch) throws Exception {
+        ParallelGraphLoader heap = ParallelGraphLoader.load(file, tau, ForkJoinPool.commonPool());
+        OffHeapGraphLoader mapped = OffHeapGraphLoader.load(file, tau, shift, batch);
+        assertEquals(heap.connectedCount(), mapped.connectedCount());
+        GraphCSR expected = heap.graph();
+        GraphOffHeap graph = mapped.graph();
+        assertEquals(expected.nodeCount(), graph.nodeCount());
+        assertEquals(expected.edgeCount(), graph.edgeCount());
+        for (int v = 0; v < expected.nodeCount(); v++) {
+            int[] ids = expected.neighbors(v);
+            assertArrayEquals(ids, graph.neighbors(v));
+            for (int w : ids) {
+                assertEquals(expected.weight(v, w), graph.weight(v, w));
+            }
+        }
+    }
+
+    @Test
+    public void testLongWeightsParseLikeDoubleParseDouble() throws Exception {
+        // 18 digits: dividing the rounded mantissa by 10^18 is one ulp off
+        String[] weights = {"0.615313562163060672", "0.30000000000000001", "0.123456789012345"};
+        File file = tempFolder.newFile("long_weights.mtx");
+        StringBuilder text = new StringBuilder("3 3\n");
+        for (String weight : weights) {
+            text.append("1 2 ").append(weight).append('\n');
+        }
+        Files.write(file.toPath(), text.toString().getBytes());
+        List<Double> read = new ArrayList<>();
+        MtxReader.read(file.toPath(), new MtxReader.EdgeHandler() {
+            public void vertices(int n) {
+            }
+
+            public void edge(int from, int to, double weight) {
+                read.add(weight);
+            }
+        });
+        assertEquals(weights.length, read.size());
+        for (int i = 0; i < weights.length; i++) {
+            assertEquals(Double.doubleToLongBits(Double.parseDouble(weights[i])),
+                    Double.doubleToLongBits(read.get(i)));
+        }
+    }
 }
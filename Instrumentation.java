@@ -0,0 +1,212 @@
+import java.lang.management.ManagementFactory;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * Probes around the public operations of InformationSpread and the phases
+ * inside them. A probe becomes a Flight Recorder event while a recording
+ * is running, and a sample of {@link SpreadMetrics} while metrics are
+ * enabled. When neither is on, {@link #operation} and {@link #phase}
+ * return null after two volatile reads and every other call ignores it, so
+ * nothing is allocated or timed.
+ *
+ * A phase belongs to the operation running on the same thread, which is
+ * credited with the edges the phase scanned. Phases run on pool workers
+ * are recorded on their own.
+ */
+final class Instrumentation
+{
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final ThreadLocal<Probe> CURRENT = new ThreadLocal<>();
+    private static volatile boolean recording; // some Flight Recorder recording is running
+
+    static
+    {
+        FlightRecorder.addListener(new FlightRecorderListener()
+        {
+            public void recordingStateChanged(Recording changed)
+            {
+                updateRecording();
+            }
+        });
+        updateRecording();
+    }
+
+
+    private Instrumentation()
+    {
+        // static helpers only
+    }
+
+
+    /**
+     * Start timing a public operation
+     *
+     * @param name the operation, named after its method
+     * @return the probe to end, or null if nothing is listening
+     */
+    static Probe operation(String name)
+    {
+        return recording || SpreadMetrics.get().isEnabled() ? new Probe(name, false) : null;
+    }
+
+
+    /**
+     * Start timing a phase of an operation
+     *
+     * @param name the phase
+     * @return the probe to end, or null if nothing is listening
+     */
+    static Probe phase(String name)
+    {
+        return recording || SpreadMetrics.get().isEnabled() ? new Probe(name, true) : null;
+    }
+
+
+    /**
+     * Count edges read by a probe's work
+     *
+     * @param probe   a probe, or null
+     * @param entries the number of adjacency entries read
+     */
+    static void scanned(Probe probe, long entries)
+    {
+        if (probe != null)
+            probe.scanned += entries;
+    }
+
+
+    /**
+     * Stop timing and report a probe
+     *
+     * @param probe a probe, or null
+     * @param graph the graph the work ran on, or null if there is none yet
+     */
+    static void end(Probe probe, Graph graph)
+    {
+        if (probe != null)
+            probe.end(graph);
+    }
+
+
+    // Recordings only change state through FlightRecorder, which calls back here
+    private static void updateRecording()
+    {
+        boolean running = false;
+        if (FlightRecorder.isInitialized())
+            for (Recording r : FlightRecorder.getFlightRecorder().getRecordings())
+                running |= r.getState() == RecordingState.RUNNING;
+        recording = running;
+    }
+
+
+    /**
+     * One timed operation or phase, ended on the thread that started it
+     */
+    static final class Probe
+    {
+        private final String      name;
+        private final boolean     phase;
+        private final Probe       parent;
+        private final SpreadEvent event;
+        private final long        start;
+        private final long        startBytes;
+        private long              scanned;
+
+
+        private Probe(String name, boolean phase)
+        {
+            this.name = name;
+            this.phase = phase;
+            this.parent = CURRENT.get();
+            CURRENT.set(this);
+            if (recording)
+            {
+                event = phase ? new PhaseEvent() : new OperationEvent();
+                event.begin();
+            }
+            else
+                event = null;
+            startBytes = THREADS.getCurrentThreadAllocatedBytes();
+            start = System.nanoTime();
+        }
+
+
+        private void end(Graph graph)
+        {
+            long nanos = System.nanoTime() - start;
+            long bytes = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+            CURRENT.set(parent);
+            if (phase && parent != null)
+                parent.scanned += scanned;
+            if (event != null)
+            {
+                event.end();
+                if (event.shouldCommit())
+                {
+                    event.name = name;
+                    event.nodes = graph == null ? 0 : graph.nodeCount() - 1;
+                    event.edges = graph == null ? 0 : graph.longEdgeCount();
+                    event.edgesScanned = scanned;
+                    event.allocated = bytes;
+                    event.commit();
+                }
+            }
+            SpreadMetrics metrics = SpreadMetrics.get();
+            if (metrics.isEnabled())
+                metrics.record(name, phase, nanos, scanned, bytes);
+        }
+    }
+
+
+    // Fields shared by both event types
+    abstract static class SpreadEvent extends Event
+    {
+        @Label("Name")
+        String name;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Edges")
+        @Description("Adjacency entries of the graph, two per undirected edge")
+        long edges;
+
+        @Label("Edges Scanned")
+        @Description("Adjacency entries read by the work")
+        long edgesScanned;
+
+        @Label("Allocated")
+        @Description("Bytes allocated by the thread that ran the work")
+        @DataAmount
+        long allocated;
+    }
+
+
+    @Name("InformationSpread.Operation")
+    @Label("Spread Operation")
+    @Category("Information Spread")
+    @Description("A public InformationSpread operation")
+    static final class OperationEvent extends SpreadEvent
+    {
+    }
+
+
+    @Name("InformationSpread.Phase")
+    @Label("Spread Phase")
+    @Category("Information Spread")
+    @Description("A phase inside an InformationSpread operation")
+    static final class PhaseEvent extends SpreadEvent
+    {
+    }
+}
@@ -0,0 +1,80 @@
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only Set view of a sorted array of distinct ints. Lookups are binary
+ * searches; nothing is boxed until an element is read through the Set API.
+ */
+public class IntSet extends AbstractSet<Integer>
+{
+    private final int[] values;
+
+
+    /**
+     * @param values distinct values in increasing order; the array is kept,
+     *               not copied
+     */
+    IntSet(int[] values)
+    {
+        this.values = values;
+    }
+
+
+    /**
+     * @return the backing array, in increasing order
+     */
+    int[] toIntArray()
+    {
+        return values;
+    }
+
+
+    /**
+     * @param value the value to look for
+     * @return true if the set holds value
+     */
+    boolean contains(int value)
+    {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+
+    @Override
+    public int size()
+    {
+        return values.length;
+    }
+
+
+    @Override
+    public Iterator<Integer> iterator()
+    {
+        return new Iterator<Integer>()
+        {
+            private int next;
+
+
+            public boolean hasNext()
+            {
+                return next < values.length;
+            }
+
+
+            public Integer next()
+            {
+                if (next >= values.length)
+                    throw new NoSuchElementException();
+                return values[next++];
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+import java.io.IOException;
+
+/**
+ * Results of one intervention strategy over a range of parameters, one row
+ * per parameter: the nodes removed, the R0 left and the generations needed
+ * to reach the threshold from the seed. The parameter is a degree, or a
+ * clustering coefficient interval given by its low and high bounds.
+ */
+public class InterventionSweep
+{
+    private final boolean  interval;
+    private final double[] low;
+    private final double[] high;
+    private final int[]    removed;
+    private final double[] rNumber;
+    private final int[]    generations;
+
+
+    /**
+     * @param interval    true if each row is a [low, high] interval, false if
+     *                    it is the degree in low
+     * @param low         the degree or low bound of each row
+     * @param high        the high bound of each row, ignored for degrees
+     * @param removed     the number of nodes each row removes
+     * @param rNumber     the R0 of each row
+     * @param generations the generations of each row
+     */
+    InterventionSweep(boolean interval, double[] low, double[] high, int[] removed,
+        double[] rNumber, int[] generations)
+    {
+        this.interval = interval;
+        this.low = low;
+        this.high = high;
+        this.removed = removed;
+        this.rNumber = rNumber;
+        this.generations = generations;
+    }
+
+
+    /**
+     * @return the number of rows
+     */
+    public int size()
+    {
+        return removed.length;
+    }
+
+
+    /**
+     * @param row a row
+     * @return its degree, or the low bound of its interval
+     */
+    public double low(int row)
+    {
+        return low[row];
+    }
+
+
+    /**
+     * @param row a row
+     * @return the high bound of its interval, or its degree
+     */
+    public double high(int row)
+    {
+        return high[row];
+    }
+
+
+    /**
+     * @param row a row
+     * @return the number of nodes it removes
+     */
+    public int removed(int row)
+    {
+        return removed[row];
+    }
+
+
+    /**
+     * @param row a row
+     * @return the R0 once its nodes are removed
+     */
+    public double rNumber(int row)
+    {
+        return rNumber[row];
+    }
+
+
+    /**
+     * @param row a row
+     * @return the generations once its nodes are removed, as the single
+     *         parameter generations method returns them
+     */
+    public int generations(int row)
+    {
+        return generations[row];
+    }
+
+
+    /**
+     * Write the table as CSV, with a header line
+     *
+     * @param out where to write
+     * @throws IOException if out cannot be written
+     */
+    public void writeCsv(Appendable out) throws IOException
+    {
+        out.append(interval ? "low,high" : "degree").append(",removed,r0,generations\n");
+        for (int row = 0; row < size(); row++)
+        {
+            if (interval)
+                out.append(Double.toString(low[row])).append(',')
+                    .append(Double.toString(high[row]));
+            else
+                out.append(Long.toString((long) low[row]));
+            out.append(',').append(Integer.toString(removed[row]))
+                .append(',').append(Double.toString(rNumber[row]))
+                .append(',').append(Integer.toString(generations[row])).append('\n');
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Read-only view of a graph with some vertices removed. Nothing is copied:
+ * the view holds the base graph and a bitset of removed vertices, and
+ * counts the degrees left the first time one is asked for. A removed
+ * vertex keeps its id but has no edges, and edges to it are hidden from every
+ * other vertex, which is what deleting all of its edges from a copy did.
+ */
+public class MaskedGraph implements Graph
+{
+    private final Graph    base;
+    private final BitSet   removed;
+    private volatile int[] degree; // neighbors left per vertex, counted on first use
+    private int            edges;  // the sum of degree, written before it
+
+
+    /**
+     * @param base         the graph to view; it must not change while the view is used
+     * @param removedNodes the vertices to hide
+     */
+    MaskedGraph(Graph base, int[] removedNodes)
+    {
+        this.base = base;
+        this.removed = new BitSet(base.nodeCount());
+        for (int v : removedNodes)
+            removed.set(v);
+    }
+
+
+    /**
+     * @param v a vertex
+     * @return true if v is hidden by this view
+     */
+    boolean isRemoved(int v)
+    {
+        return removed.get(v);
+    }
+
+
+    // A view cannot be resized
+    public void init(int n)
+    {
+        throw new UnsupportedOperationException("MaskedGraph is read-only");
+    }
+
+
+    // Return the number of vertices, removed ones included
+    public int nodeCount()
+    {
+        return base.nodeCount();
+    }
+
+
+    // Return the number of edges left
+    public int edgeCount()
+    {
+        degrees();
+        return edges;
+    }
+
+
+    // Count the neighbors left to every vertex, once: O(n + m). Threads
+    // that race here count the same values.
+    private int[] degrees()
+    {
+        int[] counts = degree;
+        if (counts != null)
+            return counts;
+        counts = new int[nodeCount()];
+        NeighborCursor all = base.cursor();
+        int sum = 0;
+        for (int v = 0; v < counts.length; v++)
+        {
+            if (removed.get(v))
+                continue;
+            all.reset(v);
+            int[] ids = all.ids();
+            for (int i = all.start(), end = all.end(); i < end; i++)
+                if (!removed.get(ids[i]))
+                    counts[v]++;
+            sum += counts[v];
+        }
+        edges = sum;
+        degree = counts;
+        return counts;
+    }
+
+
+    // Get the value of node with index v
+    public Object getValue(int v)
+    {
+        return base.getValue(v);
+    }
+
+
+    // A view cannot be changed
+    public void setValue(int v, Object val)
+    {
+        throw new UnsupportedOperationException("MaskedGraph is read-only");
+    }
+
+
+    // A view cannot be changed
+    public void addEdge(int v, int w, int wgt)
+    {
+        throw new UnsupportedOperationException("MaskedGraph is read-only");
+    }
+
+
+    // Get the weight value for an edge, 0 if either end is removed
+    public int weight(int v, int w)
+    {
+        if (removed.get(v) || removed.get(w))
+            return 0;
+        return base.weight(v, w);
+    }
+
+
+    // A view cannot be changed
+    public void removeEdge(int v, int w)
+    {
+        throw new UnsupportedOperationException("MaskedGraph is read-only");
+    }
+
+
+    // Returns true iff the graph has the edge and neither end is removed
+    public boolean hasEdge(int v, int w)
+    {
+        return !removed.get(v) && !removed.get(w) && base.hasEdge(v, w);
+    }
+
+
+    // Returns an array containing the indices of the neighbors of v that are not removed
+    public int[] neighbors(int v)
+    {
+        if (removed.get(v))
+            return new int[0];
+        int[] all = base.neighbors(v);
+        int cnt = 0;
+        for (int w : all)
+            if (!removed.get(w))
+                all[cnt++] = w;
+        return cnt == all.length ? all : Arrays.copyOf(all, cnt);
+    }
+
+
+    // Return the number of neighbors of v that are not removed
+    public int degree(int v)
+    {
+        return degrees()[v];
+    }
+
+
+    // Returns a cursor over the base graph that skips removed vertices
+    public NeighborCursor cursor()
+    {
+        return new MaskedCursor(base.cursor());
+    }
+
+
+    // Copies the neighbors that are not removed into a buffer
+    private class MaskedCursor implements NeighborCursor
+    {
+        private final NeighborCursor all;
+        private int[]                buffer = new int[0];
+        private int[]                position = new int[0]; // index of buffer[k] in all
+        private int                  end;
+
+
+        MaskedCursor(NeighborCursor all)
+        {
+            this.all = all;
+        }
+
+
+        public void reset(int v)
+        {
+            end = 0;
+            if (removed.get(v))
+                return;
+            all.reset(v);
+            int[] ids = all.ids();
+            int size = all.end() - all.start();
+            if (buffer.length < size)
+            {
+                buffer = new int[Math.max(size, 2 * buffer.length)];
+                position = new int[buffer.length];
+            }
+            for (int i = all.start(); i < all.end(); i++)
+                if (!removed.get(ids[i]))
+                {
+                    buffer[end] = ids[i];
+                    position[end++] = i;
+                }
+        }
+
+
+        public int[] ids()
+        {
+            return buffer;
+        }
+
+
+        public int start()
+        {
+            return 0;
+        }
+
+
+        public int end()
+        {
+            return end;
+        }
+
+
+        public int weight(int i)
+        {
+            return all.weight(position[i]);
+        }
+    }
+}
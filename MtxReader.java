@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader for the edge list files used by InformationSpread. The
+ * first line holds the number of vertices, every other line holds
+ * "from to weight". The file is memory-mapped and parsed straight from the
+ * bytes, so no String is created per line and the file contents are never
+ * copied onto the heap. Lines starting with '%' are comments.
+ */
+public class MtxReader
+{
+    /**
+     * Receives the contents of a file in order
+     */
+    interface EdgeHandler
+    {
+        /**
+         * Called once, before any edge, with the declared vertex count
+         *
+         * @param n the number of vertices in the header line
+         */
+        void vertices(int n);
+
+
+        /**
+         * Called for every edge line
+         *
+         * @param from   the from node
+         * @param to     the to node
+         * @param weight the weight exactly as Double.parseDouble reads it
+         */
+        void edge(int from, int to, double weight);
+    }
+
+    // Files larger than this are mapped in several windows
+    private static final long WINDOW = 1L << 30;
+
+    // Powers of ten that are exact doubles
+    private static final double[] POW10 = new double[23];
+
+    static
+    {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final EdgeHandler handler;
+    private MappedByteBuffer  buf;
+    private int               pos;
+    private int               limit;
+    private boolean           headerSeen;
+    private long              windowStart;
+
+
+    private MtxReader(EdgeHandler handler, boolean headerSeen)
+    {
+        this.handler = handler;
+        this.headerSeen = headerSeen;
+    }
+
+
+    /**
+     * Parse a file, handing the header and every edge to the handler
+     *
+     * @param file    the file to read
+     * @param handler receives the vertex count and the edges
+     * @return false if the file has no header line
+     * @throws IOException if the file cannot be read
+     */
+    static boolean read(Path file, EdgeHandler handler) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long edgesStart = readHeader(channel, handler);
+            if (edgesStart < 0)
+                return false;
+            readEdges(channel, edgesStart, channel.size(), handler);
+            return true;
+        }
+    }
+
+
+    /**
+     * Parse the comments and the header line at the start of a file
+     *
+     * @param channel the file to read
+     * @param handler receives the vertex count
+     * @return the offset of the first line after the header, or -1 if the
+     *         file has no header line
+     * @throws IOException if the file cannot be read
+     */
+    static long readHeader(FileChannel channel, EdgeHandler handler) throws IOException
+    {
+        MtxReader reader = new MtxReader(handler, false);
+        long start = 0;
+        long size = channel.size();
+        while (start < size && !reader.headerSeen)
+        {
+            long end = alignToLine(channel, Math.min(size, start + 1));
+            reader.parseWindow(channel, start, end);
+            start = end;
+        }
+        return reader.headerSeen ? start : -1;
+    }
+
+
+    /**
+     * Parse the edge lines in a byte range. Both ends of the range must be at
+     * the start of a line, as returned by alignToLine.
+     *
+     * @param channel the file to read
+     * @param start   the offset of the first line
+     * @param end     the offset just past the last line
+     * @param handler receives the edges
+     * @throws IOException if the file cannot be read
+     */
+    static void readEdges(FileChannel channel, long start, long end, EdgeHandler handler)
+        throws IOException
+    {
+        MtxReader reader = new MtxReader(handler, true);
+        while (start < end)
+        {
+            long windowEnd = Math.min(end, start + WINDOW);
+            if (windowEnd < end)
+            {
+                windowEnd = reader.lastLineEnd(channel, start, windowEnd);
+                if (windowEnd < 0)
+                    throw new IOException("Line longer than " + WINDOW + " bytes");
+            }
+            reader.parseWindow(channel, start, windowEnd);
+            start = windowEnd;
+        }
+    }
+
+
+    /**
+     * @param channel the file
+     * @param pos     an offset in the file
+     * @return the first offset at or after pos that starts a line, or the
+     *         file size if there is none
+     * @throws IOException if the file cannot be read
+     */
+    static long alignToLine(FileChannel channel, long pos) throws IOException
+    {
+        long size = channel.size();
+        if (pos <= 0)
+            return 0;
+        ByteBuffer scan = ByteBuffer.allocate(4096);
+        pos--; // a line starts at pos if the byte before it ends a line
+        while (pos < size)
+        {
+            scan.clear();
+            int n = channel.read(scan, pos);
+            if (n <= 0)
+                break;
+            for (int i = 0; i < n; i++)
+                if (scan.get(i) == '\n')
+                    return pos + i + 1;
+            pos += n;
+        }
+        return size;
+    }
+
+
+    private void parseWindow(FileChannel channel, long start, long end) throws IOException
+    {
+        buf = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        windowStart = start;
+        pos = 0;
+        limit = (int) (end - start);
+        parseLines();
+    }
+
+
+    // Return the offset just past the last '\n' in [start, end), or -1
+    private long lastLineEnd(FileChannel channel, long start, long end) throws IOException
+    {
+        MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        for (int i = window.limit() - 1; i >= 0; i--)
+            if (window.get(i) == '\n')
+                return start + i + 1;
+        return -1;
+    }
+
+
+    private void parseLines()
+    {
+        while (pos < limit)
+        {
+            skipBlanks();
+            if (pos >= limit || buf.get(pos) == '\n' || buf.get(pos) == '%')
+            {
+                skipLine();
+                continue;
+            }
+            if (!headerSeen)
+            {
+                headerSeen = true;
+                handler.vertices(parseInt());
+            }
+            else
+            {
+                int from = parseInt();
+                skipBlanks();
+                int to = parseInt();
+                skipBlanks();
+                handler.edge(from, to, parseDouble());
+            }
+            skipLine();
+        }
+    }
+
+
+    private void skipBlanks()
+    {
+        while (pos < limit)
+        {
+            byte b = buf.get(pos);
+            if (b != ' ' && b != '\t' && b != '\r')
+                return;
+            pos++;
+        }
+    }
+
+
+    private void skipLine()
+    {
+        while (pos < limit && buf.get(pos++) != '\n')
+        {
+            // skip the rest of the line
+        }
+    }
+
+
+    private int parseInt()
+    {
+        boolean negative = pos < limit && buf.get(pos) == '-';
+        if (negative)
+            pos++;
+        int start = pos;
+        long value = 0;
+        while (pos < limit)
+        {
+            int digit = buf.get(pos) - '0';
+            if (digit < 0 || digit > 9)
+                break;
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE)
+                throw malformed();
+            pos++;
+        }
+        if (pos == start)
+            throw malformed();
+        return (int) (negative ? -value : value);
+    }
+
+
+    // Decimal numbers with at most 15 significant digits and no exponent are
+    // divided by an exact power of ten. Both operands are then exact doubles, so
+    // the one rounding of the division matches Double.parseDouble. Longer
+    // mantissas would be rounded twice; they and anything else go through
+    // Double.parseDouble.
+    private double parseDouble()
+    {
+        int start = pos;
+        boolean negative = pos < limit && buf.get(pos) == '-';
+        if (negative || (pos < limit && buf.get(pos) == '+'))
+            pos++;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean sawDigit = false;
+        while (pos < limit)
+        {
+            byte b = buf.get(pos);
+            if (b >= '0' && b <= '9')
+            {
+                sawDigit = true;
+                if (mantissa != 0 || b != '0')
+                    digits++;
+                mantissa = mantissa * 10 + (b - '0');
+                if (scale >= 0)
+                    scale++;
+            }
+            else if (b == '.' && scale < 0)
+                scale = 0;
+            else
+                break;
+            pos++;
+            if (digits > 15)
+                return slowDouble(start);
+        }
+        if (pos < limit && (buf.get(pos) == 'e' || buf.get(pos) == 'E'))
+            return slowDouble(start);
+        if (scale < 0)
+            scale = 0;
+        if (!sawDigit || scale >= POW10.length)
+            return slowDouble(start);
+        double value = mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+
+    private double slowDouble(int start)
+    {
+        pos = start;
+        StringBuilder token = new StringBuilder();
+        while (pos < limit)
+        {
+            byte b = buf.get(pos);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n')
+                break;
+            token.append((char) b);
+            pos++;
+        }
+        try
+        {
+            return Double.parseDouble(token.toString());
+        }
+        catch (NumberFormatException e)
+        {
+            throw malformed();
+        }
+    }
+
+
+    private NumberFormatException malformed()
+    {
+        return new NumberFormatException("Malformed number at byte " + (windowStart + pos));
+    }
+}
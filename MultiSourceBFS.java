@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Runs up to 64 breadth-first searches at once, in the style of MS-BFS
+ * (Then et al., "The More the Merrier: Efficient Multi-Source Graph
+ * Traversal"). Every vertex holds one long per state, with bit i standing
+ * for search i: seen marks the searches that reached it, visit the searches
+ * whose frontier it is in. Expanding a vertex once pushes all of its
+ * searches to its neighbors with a single AND-NOT, so searches that overlap
+ * share every neighbor scan.
+ */
+public class MultiSourceBFS
+{
+    private final NeighborCursor neighbors;
+    private final int            n;
+    private final long[]         seen;
+    private long[]               visit;
+    private long[]               visitNext;
+
+
+    /**
+     * @param graph the graph to search
+     */
+    MultiSourceBFS(Graph graph)
+    {
+        this.neighbors = graph.cursor();
+        this.n = graph.nodeCount();
+        seen = new long[n];
+        visit = new long[n];
+        visitNext = new long[n];
+    }
+
+
+    /**
+     * Count, for every seed, the levels needed to reach a number of vertices
+     *
+     * @param seeds  the vertices the searches start from; each counts as reached
+     * @param target the number of vertices every search must reach
+     * @return for every seed, the number of levels after which at least target
+     *         vertices are reached, or -1 if its component is smaller than target
+     */
+    int[] levelsToReach(int[] seeds, int target)
+    {
+        int[] levels = new int[seeds.length];
+        for (int first = 0; first < seeds.length; first += 64)
+            batch(seeds, first, Math.min(seeds.length, first + 64), target, levels);
+        return levels;
+    }
+
+
+    // Search seeds[from .. to) together, at most 64 of them
+    private void batch(int[] seeds, int from, int to, int target, int[] levels)
+    {
+        int lanes = to - from;
+        int[] reached = new int[lanes];
+        long active = 0;
+        for (int lane = 0; lane < lanes; lane++)
+        {
+            int seed = seeds[from + lane];
+            seen[seed] |= 1L << lane;
+            visit[seed] |= 1L << lane;
+            reached[lane] = 1;
+            levels[from + lane] = -1;
+            if (target <= 1)
+                levels[from + lane] = 0;
+            else
+                active |= 1L << lane;
+        }
+
+        int genCount = 0;
+        boolean frontier = active != 0;
+        while (frontier && active != 0)
+        {
+            genCount++;
+            for (int v = 0; v < n; v++)
+            {
+                long searches = visit[v] & active;
+                if (searches == 0)
+                    continue;
+                neighbors.reset(v);
+                int[] ids = neighbors.ids();
+                for (int i = neighbors.start(), end = neighbors.end(); i < end; i++)
+                {
+                    int w = ids[i];
+                    long fresh = searches & ~seen[w];
+                    if (fresh != 0)
+                    {
+                        visitNext[w] |= fresh;
+                        seen[w] |= fresh;
+                    }
+                }
+            }
+
+            frontier = false;
+            for (int v = 0; v < n; v++)
+            {
+                long fresh = visitNext[v];
+                if (fresh == 0)
+                    continue;
+                frontier = true;
+                while (fresh != 0)
+                {
+                    reached[Long.numberOfTrailingZeros(fresh)]++;
+                    fresh &= fresh - 1;
+                }
+            }
+            for (long open = active; open != 0; open &= open - 1)
+            {
+                int lane = Long.numberOfTrailingZeros(open);
+                if (reached[lane] >= target)
+                {
+                    levels[from + lane] = genCount;
+                    active &= ~(1L << lane);
+                }
+            }
+
+            long[] swap = visit;
+            visit = visitNext;
+            visitNext = swap;
+            Arrays.fill(visitNext, 0);
+        }
+
+        Arrays.fill(seen, 0);
+        Arrays.fill(visit, 0);
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Reusable view of the neighbors of one vertex at a time, so that scanning
+ * edges allocates nothing. After reset(v) the neighbors of v are
+ * ids()[start() .. end() - 1], in the order {@link Graph#neighbors} lists
+ * them. The array is the graph's own storage or a buffer of the cursor:
+ * read it only until the next reset, and never write to it. A cursor is
+ * meant for one thread; the graph must not change while it is used.
+ */
+public interface NeighborCursor
+{
+    /**
+     * Move to the neighbors of a vertex
+     *
+     * @param v - the node
+     */
+    void reset(int v);
+
+
+    /**
+     * @return the array holding the neighbors
+     */
+    int[] ids();
+
+
+    /**
+     * @return the index in ids() of the first neighbor
+     */
+    int start();
+
+
+    /**
+     * @return the index in ids() after the last neighbor
+     */
+    int end();
+
+
+    /**
+     * @param i - an index from start() to end() - 1
+     * @return the weight of the edge to ids()[i]
+     */
+    int weight(int i);
+}
@@ -0,0 +1,316 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Degree and clustering coefficient index over the nodes 1 .. n-1 of a
+ * graph, built once per loaded graph so that strategy node selection is a
+ * range lookup instead of a scan. Nodes are bucketed by degree, and a second
+ * array keeps them in order of clustering coefficient. Within each degree
+ * bucket the nodes are also kept in coefficient order, so "degree at least
+ * k and coefficient at most c" is one binary search per degree present.
+ *
+ * The degree part is built right away; the coefficient part is built on the
+ * first query that needs it, since it requires a triangle count.
+ */
+public class NodeIndex
+{
+    private final Graph          graph;
+    private final NeighborCursor neighbors;
+    private final ForkJoinPool   pool;
+    private final int[]          degree;
+    private final int[]          degreeStart; // bucket of degree d starts here
+    private final int[]          byDegree;    // node ids by degree, then id
+    private final long           degreeSum;
+    private final int[]          marked;      // stamped with mark by entriesWithout
+    private int                  mark;
+
+    private double[] coeff;
+    private int[]    byCoeff;       // node ids by coefficient, then id
+    private double[] sortedCoeff;   // coefficient of byCoeff[i]
+    private int[]    byDegreeCoeff; // positions in byCoeff, by degree then coefficient
+
+
+    /**
+     * @param graph the graph to index; it must not change while the index is used
+     * @param pool  the pool used to count triangles
+     */
+    NodeIndex(Graph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.neighbors = graph.cursor();
+        this.pool = pool;
+        int n = graph.nodeCount();
+        degree = new int[n];
+        marked = new int[n];
+        int maxDegree = 0;
+        long sum = 0;
+        for (int v = 1; v < n; v++)
+        {
+            degree[v] = graph.degree(v);
+            maxDegree = Math.max(maxDegree, degree[v]);
+            sum += degree[v];
+        }
+        degreeSum = sum;
+        degreeStart = new int[maxDegree + 2];
+        for (int v = 1; v < n; v++)
+            degreeStart[degree[v] + 1]++;
+        for (int d = 0; d <= maxDegree; d++)
+            degreeStart[d + 1] += degreeStart[d];
+        byDegree = new int[Math.max(0, n - 1)];
+        int[] next = Arrays.copyOf(degreeStart, maxDegree + 1);
+        for (int v = 1; v < n; v++)
+            byDegree[next[degree[v]]++] = v;
+    }
+
+
+    /**
+     * @param v a node id
+     * @return the number of neighbors of v
+     */
+    int degree(int v)
+    {
+        return degree[v];
+    }
+
+
+    /**
+     * @return the degree of every node, indexed by id; not a copy
+     */
+    int[] degrees()
+    {
+        return degree;
+    }
+
+
+    /**
+     * Count the neighbor entries left over nodes 1 .. n-1 once some nodes
+     * are removed with all their edges, as recounting every list would.
+     * Each edge is stored in both directions, so a removed node takes away
+     * its own list plus one entry in the list of each neighbor that stays.
+     * Runs in time proportional to the degrees of the removed nodes.
+     *
+     * @param removedNodes distinct node ids
+     * @return the total degree of the graph without those nodes
+     */
+    long entriesWithout(int[] removedNodes)
+    {
+        if (++mark == Integer.MAX_VALUE)
+        {
+            Arrays.fill(marked, 0);
+            mark = 1;
+        }
+        for (int v : removedNodes)
+            marked[v] = mark;
+        long left = degreeSum;
+        for (int v : removedNodes)
+        {
+            left -= degree[v];
+            neighbors.reset(v);
+            int[] ids = neighbors.ids();
+            for (int i = neighbors.start(), end = neighbors.end(); i < end; i++)
+                if (marked[ids[i]] != mark)
+                    left--;
+        }
+        return left;
+    }
+
+
+    /**
+     * @param v a node id
+     * @return the clustering coefficient of v
+     */
+    double clustCoeff(int v)
+    {
+        buildCoeff();
+        return coeff[v];
+    }
+
+
+    /**
+     * @param d a degree
+     * @return the nodes with exactly degree d, in increasing order
+     */
+    int[] degreeNodes(int d)
+    {
+        if (d < 0 || d + 1 >= degreeStart.length)
+            return new int[0];
+        return Arrays.copyOfRange(byDegree, degreeStart[d], degreeStart[d + 1]);
+    }
+
+
+    /**
+     * @param low  the lowest coefficient to include
+     * @param high the highest coefficient to include
+     * @return the nodes with a coefficient in [low, high], in increasing order
+     */
+    int[] clustCoeffNodes(double low, double high)
+    {
+        buildCoeff();
+        int from = firstAtLeast(sortedCoeff, 0, sortedCoeff.length, low);
+        int to = firstAbove(sortedCoeff, from, sortedCoeff.length, high);
+        int[] nodes = Arrays.copyOfRange(byCoeff, from, Math.max(from, to));
+        Arrays.sort(nodes);
+        return nodes;
+    }
+
+
+    /**
+     * @param minDegree the lowest degree to include
+     * @param maxCoeff  the highest coefficient to include
+     * @return the nodes with degree of at least minDegree and a coefficient of
+     *         at most maxCoeff, in increasing order
+     */
+    int[] highDegLowCCNodes(int minDegree, double maxCoeff)
+    {
+        buildCoeff();
+        int first = Math.max(0, Math.min(minDegree, degreeStart.length - 1));
+        int[] nodes = new int[byDegreeCoeff.length - degreeStart[first]];
+        int count = 0;
+        for (int d = first; d + 1 < degreeStart.length; d++)
+        {
+            int start = degreeStart[d];
+            int end = degreeStart[d + 1];
+            // within a bucket, byDegreeCoeff holds increasing byCoeff positions
+            int lo = start;
+            int hi = end;
+            while (lo < hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                if (sortedCoeff[byDegreeCoeff[mid]] <= maxCoeff)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            for (int i = start; i < lo; i++)
+                nodes[count++] = byCoeff[byDegreeCoeff[i]];
+        }
+        nodes = Arrays.copyOf(nodes, count);
+        Arrays.sort(nodes);
+        return nodes;
+    }
+
+
+    /**
+     * @return every node, highest degree first, ties by increasing id
+     */
+    int[] byDecreasingDegree()
+    {
+        int[] order = new int[byDegree.length];
+        int count = 0;
+        for (int d = degreeStart.length - 2; d >= 0; d--)
+            for (int i = degreeStart[d]; i < degreeStart[d + 1]; i++)
+                order[count++] = byDegree[i];
+        return order;
+    }
+
+
+    /**
+     * @return every node, lowest coefficient first, ties by increasing id
+     */
+    int[] byIncreasingCoeff()
+    {
+        buildCoeff();
+        return byCoeff.clone();
+    }
+
+
+    /**
+     * High degree and low coefficient combined: the number of pairs of a
+     * node's neighbors that are not linked to each other,
+     * d * (d - 1) / 2 * (1 - coefficient).
+     *
+     * @return every node by decreasing unlinked neighbor pairs, ties by
+     *         increasing id
+     */
+    int[] byDecreasingDegCC()
+    {
+        buildCoeff();
+        double[] score = new double[degree.length];
+        for (int v = 1; v < degree.length; v++)
+            score[v] = -((double) degree[v] * (degree[v] - 1) / 2 * (1 - coeff[v]));
+        return orderBy(score);
+    }
+
+
+    private void buildCoeff()
+    {
+        if (coeff != null)
+            return;
+        Instrumentation.Probe phase = Instrumentation.phase("triangles");
+        Instrumentation.scanned(phase, graph.longEdgeCount());
+        double[] all;
+        try
+        {
+            all = TriangleCounter.clusteringCoefficients(graph, pool);
+        }
+        finally
+        {
+            Instrumentation.end(phase, graph);
+        }
+        int nodes = byDegree.length;
+        int[] order = orderBy(all);
+        double[] sorted = new double[nodes];
+        for (int i = 0; i < nodes; i++)
+            sorted[i] = all[order[i]];
+
+        // the same positions, regrouped by degree
+        int[] grouped = new int[nodes];
+        int[] next = Arrays.copyOf(degreeStart, degreeStart.length - 1);
+        for (int i = 0; i < nodes; i++)
+            grouped[next[degree[order[i]]]++] = i;
+
+        byCoeff = order;
+        sortedCoeff = sorted;
+        byDegreeCoeff = grouped;
+        coeff = all;
+    }
+
+
+    // Nodes 1 .. n-1 by increasing value, ties by id, without boxing
+    private int[] orderBy(double[] value)
+    {
+        int nodes = byDegree.length;
+        double[] distinct = new double[nodes];
+        for (int i = 0; i < nodes; i++)
+            distinct[i] = value[i + 1];
+        Arrays.sort(distinct);
+        long[] keys = new long[nodes];
+        for (int v = 1; v <= nodes; v++)
+            keys[v - 1] = ((long) Arrays.binarySearch(distinct, value[v]) << 32) | v;
+        Arrays.sort(keys);
+        int[] order = new int[nodes];
+        for (int i = 0; i < nodes; i++)
+            order[i] = (int) keys[i];
+        return order;
+    }
+
+
+    // First index in [from, to) whose value is >= key
+    private static int firstAtLeast(double[] values, int from, int to, double key)
+    {
+        while (from < to)
+        {
+            int mid = (from + to) >>> 1;
+            if (values[mid] < key)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+
+    // First index in [from, to) whose value is > key
+    private static int firstAbove(double[] values, int from, int to, double key)
+    {
+        while (from < to)
+        {
+            int mid = (from + to) >>> 1;
+            if (values[mid] <= key)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+}
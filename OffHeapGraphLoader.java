@@ -0,0 +1,340 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads an edge list file straight into a GraphOffHeap, without building
+ * the graph on the heap first. The file is read twice. The first pass
+ * counts the entries of every row, the second scatters every entry to its
+ * row in a memory mapped scratch file. The rows are then sorted and
+ * compacted a batch at a time, and streamed into the GraphOffHeap layout
+ * through a small buffer. The heap holds one batch of rows at most.
+ *
+ * Edges are filtered and stored exactly as the sequential loader does: the
+ * same tau and vertex 0 rule, the last line wins for a repeated edge, a
+ * weight of 0 is never stored and every stored direction counts towards
+ * the edge count.
+ */
+public class OffHeapGraphLoader
+{
+    // Rows are compacted on the heap up to this many entries at a time
+    private static final int BATCH = 1 << 20;
+
+    private final double tau;
+    private final int    shift;
+    private final long   mask;
+    private final int    batch;
+    private int          nodes;
+    private long         numEdge;
+    private LongBuffer[] offsets; // row counts, then row starts, in the scratch file
+    private IntBuffer[]  targets;
+    private IntBuffer[]  weights;
+    private GraphOffHeap graph;
+    private int          connectedCount;
+
+
+    private OffHeapGraphLoader(double tau, int shift, int batch)
+    {
+        this.tau = tau;
+        this.shift = shift;
+        this.mask = (1L << shift) - 1;
+        this.batch = batch;
+    }
+
+
+    /**
+     * @return the loaded graph
+     */
+    GraphOffHeap graph()
+    {
+        return graph;
+    }
+
+
+    /**
+     * @return the number of distinct nodes on kept edges
+     */
+    int connectedCount()
+    {
+        return connectedCount;
+    }
+
+
+    /**
+     * Load a file
+     *
+     * @param file the file to read
+     * @param tau  the minimum scaled edge weight, as kept by InformationSpread
+     * @return the loaded graph, or null if the file has no header line
+     * @throws IOException if the file cannot be read or the graph cannot be
+     *                     written
+     */
+    static OffHeapGraphLoader load(Path file, double tau) throws IOException
+    {
+        return load(file, tau, GraphOffHeap.CHUNK_SHIFT, BATCH);
+    }
+
+
+    /**
+     * Load a file, mapping every array 2^shift values at a time and
+     * compacting rows about batch entries at a time
+     *
+     * @param file  the file to read
+     * @param tau   the minimum scaled edge weight, as kept by InformationSpread
+     * @param shift log2 of the chunk length
+     * @param batch the entries compacted at once, unless a row is longer
+     * @return the loaded graph, or null if the file has no header line
+     * @throws IOException if the file cannot be read or the graph cannot be
+     *                     written
+     */
+    static OffHeapGraphLoader load(Path file, double tau, int shift, int batch)
+        throws IOException
+    {
+        OffHeapGraphLoader loader = new OffHeapGraphLoader(tau, shift, batch);
+        Path scratch = Files.createTempFile("graph", ".scratch");
+        Path result = Files.createTempFile("graph", ".offheap");
+        try (FileChannel channel = FileChannel.open(scratch, StandardOpenOption.READ,
+            StandardOpenOption.WRITE))
+        {
+            long scattered = loader.count(file, channel);
+            if (scattered < 0)
+                return null;
+            loader.scatter(file, channel, scattered);
+            long entries = loader.compact();
+            loader.write(result, entries);
+            loader.graph = GraphOffHeap.open(result, shift);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        finally
+        {
+            loader.offsets = null;
+            loader.targets = null;
+            loader.weights = null;
+            GraphOffHeap.deleteMapped(scratch);
+            GraphOffHeap.deleteMapped(result);
+        }
+        return loader;
+    }
+
+
+    // First pass: count the entries of every row, then turn the counts into
+    // row starts shifted up by one row. Returns the entry count, or -1 if the
+    // file has no header line.
+    private long count(Path file, FileChannel channel) throws IOException
+    {
+        boolean read = MtxReader.read(file, new MtxReader.EdgeHandler()
+        {
+            public void vertices(int n)
+            {
+                nodes = n + 1; // one extra vertex, as InformationSpread does
+                try
+                {
+                    offsets = GraphOffHeap.mapLongs(channel, FileChannel.MapMode.READ_WRITE,
+                        0, nodes + 1L, shift);
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+
+            public void edge(int from, int to, double value)
+            {
+                int wgt = InformationSpread.scaleWeight(value);
+                if (!keep(from, to, wgt))
+                    return;
+                put(offsets, from + 1L, get(offsets, from + 1L) + 1);
+                put(offsets, to + 1L, get(offsets, to + 1L) + 1);
+                if (wgt != 0)
+                    numEdge += 2;
+            }
+        });
+        if (!read)
+            return -1;
+
+        long sum = 0;
+        for (int v = 0; v < nodes; v++)
+        {
+            long count = get(offsets, v + 1L);
+            if (count > 0)
+                connectedCount++; // weight 0 edges still connect their nodes
+            put(offsets, v + 1L, sum);
+            sum += count;
+        }
+        return sum;
+    }
+
+
+    // Second pass: place every entry in its row in file order, which moves
+    // each row start up to the start of the next row
+    private void scatter(Path file, FileChannel channel, long scattered) throws IOException
+    {
+        long pos = 8L * (nodes + 1);
+        targets = GraphOffHeap.mapInts(channel, FileChannel.MapMode.READ_WRITE, pos,
+            scattered, shift);
+        pos += 4L * scattered;
+        weights = GraphOffHeap.mapInts(channel, FileChannel.MapMode.READ_WRITE, pos,
+            scattered, shift);
+        MtxReader.read(file, new MtxReader.EdgeHandler()
+        {
+            public void vertices(int n)
+            {
+                // already sized by the first pass
+            }
+
+
+            public void edge(int from, int to, double value)
+            {
+                int wgt = InformationSpread.scaleWeight(value);
+                if (!keep(from, to, wgt))
+                    return;
+                place(from, to, wgt);
+                place(to, from, wgt);
+            }
+        });
+    }
+
+
+    // Append an entry to row v
+    private void place(int v, int w, int wgt)
+    {
+        long slot = get(offsets, v + 1L);
+        put(offsets, v + 1L, slot + 1);
+        put(targets, slot, w);
+        put(weights, slot, wgt);
+    }
+
+
+    // Sort and compact the rows in place, a batch of rows at a time, and
+    // return the number of entries left. Compacted rows only move towards
+    // the front, so they never overwrite a row that is still to be read.
+    private long compact()
+    {
+        int[] rowTo = new int[0];
+        int[] rowWeight = new int[0];
+        long written = 0;
+        int lo = 0;
+        while (lo < nodes)
+        {
+            long start = get(offsets, lo);
+            int hi = lo + 1;
+            while (hi < nodes && hi - lo < batch && get(offsets, hi + 1L) - start <= batch)
+                hi++;
+            int len = (int) (get(offsets, hi) - start);
+
+            int[] rowStart = new int[hi - lo + 1];
+            for (int v = lo; v <= hi; v++)
+                rowStart[v - lo] = (int) (get(offsets, v) - start);
+            if (rowTo.length < len)
+            {
+                rowTo = new int[len];
+                rowWeight = new int[len];
+            }
+            for (int i = 0; i < len; i++)
+            {
+                rowTo[i] = get(targets, start + i);
+                rowWeight[i] = get(weights, start + i);
+            }
+
+            int[] newStart = new int[hi - lo + 1];
+            int kept = GraphCSR.compactRows(rowStart, rowTo, rowWeight, newStart);
+            for (int v = lo; v < hi; v++)
+                put(offsets, v, written + newStart[v - lo]);
+            for (int i = 0; i < kept; i++)
+            {
+                put(targets, written + i, rowTo[i]);
+                put(weights, written + i, rowWeight[i]);
+            }
+            written += kept;
+            lo = hi;
+        }
+        put(offsets, nodes, written);
+        return written;
+    }
+
+
+    // Stream the compacted rows into the GraphOffHeap layout
+    private void write(Path file, long entries) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buf.put(GraphOffHeap.header(nodes, numEdge, entries));
+            for (long v = 0; v <= nodes; v++)
+            {
+                if (buf.remaining() < 8)
+                    flush(channel, buf);
+                buf.putLong(get(offsets, v));
+            }
+            for (long i = 0; i < entries; i++)
+            {
+                if (buf.remaining() < 4)
+                    flush(channel, buf);
+                buf.putInt(get(targets, i));
+            }
+            for (long i = 0; i < entries; i++)
+            {
+                if (buf.remaining() < 4)
+                    flush(channel, buf);
+                buf.putInt(get(weights, i));
+            }
+            flush(channel, buf);
+        }
+    }
+
+
+    // The loader's filter, with the bounds check of GraphCSR.Builder
+    private boolean keep(int from, int to, int wgt)
+    {
+        if (!InformationSpread.keepEdge(from, to, wgt, tau))
+            return false;
+        if (from < 0 || from >= nodes || to < 0 || to >= nodes)
+            throw new ArrayIndexOutOfBoundsException("Edge (" + from + "," + to
+                + ") outside " + nodes + " vertices");
+        return true;
+    }
+
+
+    private long get(LongBuffer[] chunks, long i)
+    {
+        return chunks[(int) (i >>> shift)].get((int) (i & mask));
+    }
+
+
+    private void put(LongBuffer[] chunks, long i, long value)
+    {
+        chunks[(int) (i >>> shift)].put((int) (i & mask), value);
+    }
+
+
+    private int get(IntBuffer[] chunks, long i)
+    {
+        return chunks[(int) (i >>> shift)].get((int) (i & mask));
+    }
+
+
+    private void put(IntBuffer[] chunks, long i, int value)
+    {
+        chunks[(int) (i >>> shift)].put((int) (i & mask), value);
+    }
+
+
+    // Write out the buffered bytes and empty the buffer
+    private static void flush(FileChannel channel, ByteBuffer buf) throws IOException
+    {
+        buf.flip();
+        GraphSnapshot.writeFully(channel, buf);
+        buf.clear();
+    }
+}
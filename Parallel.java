@@ -0,0 +1,43 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Small helpers for running independent pieces of work on a ForkJoinPool
+ */
+public class Parallel
+{
+    private Parallel()
+    {
+        // static helpers only
+    }
+
+
+    /**
+     * Run body(0) .. body(count - 1) as separate tasks and wait for all of
+     * them. An exception thrown by any task is rethrown here.
+     *
+     * @param pool  the pool that runs the tasks
+     * @param count the number of tasks
+     * @param body  the work of one task
+     */
+    static void forEach(ForkJoinPool pool, int count, IntConsumer body)
+    {
+        List<ForkJoinTask<?>> work = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            int task = i;
+            work.add(ForkJoinTask.adapt(() -> body.accept(task)));
+        }
+        pool.invoke(new RecursiveAction()
+        {
+            protected void compute()
+            {
+                invokeAll(work);
+            }
+        });
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Level-synchronous breadth-first search that expands each level on a
+ * ForkJoinPool. The frontier is cut into blocks, one task per block. A
+ * vertex is claimed by setting its bit in a shared visited bitset with
+ * compare-and-set, so exactly one task adds it to the next level. Each task
+ * collects its discoveries in its own buffer, and the buffers are
+ * concatenated into the next frontier between levels. Buffers and cursors
+ * are kept from one search to the next, so a searcher can be reused.
+ */
+public class ParallelBFS
+{
+    // Frontiers smaller than this are expanded by a single task
+    private static final int MIN_BLOCK = 1024;
+
+    private Graph                 graph;
+    private final ForkJoinPool    pool;
+    private final int             n;
+    private final AtomicLongArray visited;
+    private int[]                 frontier;
+    private int[]                 next;
+    private int[][]               found = new int[0][];
+    private int[]                 foundSize = new int[0];
+    private NeighborCursor[]      cursors = new NeighborCursor[0]; // one per block
+
+
+    /**
+     * @param graph the graph to search; it is read from several threads
+     * @param pool  the pool that expands the levels
+     */
+    ParallelBFS(Graph graph, ForkJoinPool pool)
+    {
+        this.graph = graph;
+        this.pool = pool;
+        this.n = graph.nodeCount();
+        visited = new AtomicLongArray((n + 63) >>> 6);
+        frontier = new int[n];
+        next = new int[n];
+    }
+
+
+    /**
+     * Search another graph on the same vertices from now on, such as the
+     * graph with some vertices masked out
+     *
+     * @param graph the graph to search
+     */
+    void use(Graph graph)
+    {
+        if (graph != this.graph)
+        {
+            this.graph = graph;
+            Arrays.fill(cursors, null);
+        }
+    }
+
+
+    /**
+     * Count the levels needed to reach a number of vertices from a seed
+     *
+     * @param seed   the vertex the search starts from; it counts as reached
+     * @param target the number of vertices to reach
+     * @return the number of levels after which at least target vertices are
+     *         reached, or -1 if the seed's component is smaller than target
+     */
+    int levelsToReach(int seed, int target)
+    {
+        claim(seed);
+        frontier[0] = seed;
+        int frontierSize = 1;
+        int visitedCount = 1;
+        int genCount = 0;
+        while (frontierSize > 0 && visitedCount < target)
+        {
+            genCount++;
+            int blocks = Math.max(1, Math.min(pool.getParallelism() * 4,
+                frontierSize / MIN_BLOCK));
+            if (found.length < blocks)
+            {
+                found = Arrays.copyOf(found, blocks);
+                foundSize = new int[blocks];
+                cursors = Arrays.copyOf(cursors, blocks);
+            }
+            int size = frontierSize;
+            Parallel.forEach(pool, blocks, block -> expand(block,
+                (int) ((long) size * block / blocks),
+                (int) ((long) size * (block + 1) / blocks)));
+
+            frontierSize = 0;
+            for (int block = 0; block < blocks; block++)
+            {
+                System.arraycopy(found[block], 0, next, frontierSize, foundSize[block]);
+                frontierSize += foundSize[block];
+            }
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            visitedCount += frontierSize;
+            if (visitedCount >= target)
+                break;
+        }
+        for (int word = 0; word < visited.length(); word++)
+            visited.set(word, 0);
+        return visitedCount >= target ? genCount : -1;
+    }
+
+
+    // Expand frontier[from .. to) into the buffer of one block
+    private void expand(int block, int from, int to)
+    {
+        int[] buffer = found[block];
+        if (buffer == null)
+            buffer = new int[64];
+        int size = 0;
+        NeighborCursor neighbors = cursors[block];
+        if (neighbors == null)
+            cursors[block] = neighbors = graph.cursor();
+        for (int i = from; i < to; i++)
+        {
+            neighbors.reset(frontier[i]);
+            int[] ids = neighbors.ids();
+            for (int k = neighbors.start(), end = neighbors.end(); k < end; k++)
+            {
+                int w = ids[k];
+                if (claim(w))
+                {
+                    if (size == buffer.length)
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    buffer[size++] = w;
+                }
+            }
+        }
+        found[block] = buffer;
+        foundSize[block] = size;
+    }
+
+
+    // Set the visited bit of v; true if this call set it
+    private boolean claim(int v)
+    {
+        int word = v >>> 6;
+        long bit = 1L << v;
+        long old = visited.get(word);
+        while ((old & bit) == 0)
+        {
+            if (visited.compareAndSet(word, old, old | bit))
+                return true;
+            old = visited.get(word);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,324 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * Loads an edge list file into a GraphCSR on several threads. The file is
+ * cut into byte ranges that start on line boundaries and every range is
+ * parsed into its own primitive edge buffer. The buffers are then merged
+ * with a two level counting sort: first into buckets of consecutive source
+ * vertices, then by exact source inside each bucket, one bucket per task.
+ *
+ * Edges are filtered and stored exactly as the sequential loader does: the
+ * same tau and vertex 0 rule, the last line wins for a repeated edge, a
+ * weight of 0 is never stored and every stored direction counts towards
+ * the edge count.
+ */
+public class ParallelGraphLoader
+{
+    // Ranges smaller than this are not worth a task of their own
+    private static final long MIN_CHUNK = 1 << 20;
+
+    private final ForkJoinPool pool;
+    private final double       tau;
+    private final int          tasks;
+    private int                nodes;
+    private GraphCSR           graph;
+    private int                connectedCount;
+
+
+    private ParallelGraphLoader(double tau, ForkJoinPool pool)
+    {
+        this.tau = tau;
+        this.pool = pool;
+        this.tasks = pool.getParallelism() * 4;
+    }
+
+
+    /**
+     * @return the loaded graph
+     */
+    GraphCSR graph()
+    {
+        return graph;
+    }
+
+
+    /**
+     * @return the number of distinct nodes on kept edges
+     */
+    int connectedCount()
+    {
+        return connectedCount;
+    }
+
+
+    /**
+     * Load a file
+     *
+     * @param file the file to read
+     * @param tau  the minimum scaled edge weight, as kept by InformationSpread
+     * @param pool the pool that parses and sorts
+     * @return the loaded graph, or null if the file has no header line
+     * @throws IOException if the file cannot be read
+     */
+    static ParallelGraphLoader load(Path file, double tau, ForkJoinPool pool)
+        throws IOException
+    {
+        ParallelGraphLoader loader = new ParallelGraphLoader(tau, pool);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            Chunk[] chunks = loader.parse(channel);
+            if (chunks == null)
+                return null;
+            loader.merge(chunks);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        return loader;
+    }
+
+
+    // Parse the header, then every line range in parallel
+    private Chunk[] parse(FileChannel channel) throws IOException
+    {
+        long start = MtxReader.readHeader(channel, new MtxReader.EdgeHandler()
+        {
+            public void vertices(int n)
+            {
+                nodes = n + 1; // one extra vertex, as InformationSpread does
+            }
+
+
+            public void edge(int from, int to, double weight)
+            {
+                // the header line has no edges
+            }
+        });
+        if (start < 0)
+            return null;
+
+        long size = channel.size();
+        int count = (int) Math.max(1, Math.min(tasks, (size - start) / MIN_CHUNK));
+        long[] bounds = new long[count + 1];
+        bounds[0] = start;
+        bounds[count] = size;
+        for (int i = 1; i < count; i++)
+            bounds[i] = MtxReader.alignToLine(channel, start + (size - start) * i / count);
+
+        Chunk[] chunks = new Chunk[count];
+        parallelFor(count, i -> {
+            chunks[i] = new Chunk(nodes, tau);
+            try
+            {
+                MtxReader.readEdges(channel, bounds[i], bounds[i + 1], chunks[i]);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return chunks;
+    }
+
+
+    // Counting sort the parsed edges, in both directions, into compressed rows
+    private void merge(Chunk[] chunks)
+    {
+        int buckets = Math.max(1, Math.min(nodes, tasks));
+        int[] bucketStart = new int[buckets + 1];
+        for (int b = 0; b <= buckets; b++)
+            bucketStart[b] = (int) (((long) b * nodes + buckets - 1) / buckets);
+
+        // how many directed entries every chunk sends to every bucket
+        int[][] position = new int[chunks.length][buckets];
+        parallelFor(chunks.length, c -> {
+            Chunk chunk = chunks[c];
+            for (int i = 0; i < chunk.size; i++)
+            {
+                position[c][bucketOf(chunk.from[i], buckets)]++;
+                position[c][bucketOf(chunk.to[i], buckets)]++;
+            }
+        });
+        long total = 0;
+        int[] entryStart = new int[buckets + 1];
+        for (int b = 0; b < buckets; b++)
+        {
+            entryStart[b] = (int) total;
+            for (int c = 0; c < chunks.length; c++)
+            {
+                int cnt = position[c][b];
+                position[c][b] = (int) total;
+                total += cnt;
+            }
+            if (total > Integer.MAX_VALUE - 8)
+                throw new IllegalStateException("Too many edges for a GraphCSR: " + total);
+        }
+        entryStart[buckets] = (int) total;
+
+        // chunks are scattered in file order, so every bucket stays in line order
+        int[] src = new int[(int) total];
+        int[] dst = new int[(int) total];
+        int[] wgt = new int[(int) total];
+        parallelFor(chunks.length, c -> {
+            Chunk chunk = chunks[c];
+            int[] next = position[c];
+            for (int i = 0; i < chunk.size; i++)
+            {
+                int v = chunk.from[i];
+                int w = chunk.to[i];
+                int slot = next[bucketOf(v, buckets)]++;
+                src[slot] = v;
+                dst[slot] = w;
+                wgt[slot] = chunk.weight[i];
+                slot = next[bucketOf(w, buckets)]++;
+                src[slot] = w;
+                dst[slot] = v;
+                wgt[slot] = chunk.weight[i];
+            }
+            chunks[c] = null;
+        });
+
+        int[] degree = new int[nodes + 1];
+        Bucket[] rows = new Bucket[buckets];
+        parallelFor(buckets, b -> rows[b] = new Bucket(bucketStart[b], bucketStart[b + 1],
+            entryStart[b], entryStart[b + 1], src, dst, wgt, degree));
+
+        int[] offsets = new int[nodes + 1];
+        for (int v = 0; v < nodes; v++)
+            offsets[v + 1] = offsets[v] + degree[v];
+        int[] targets = new int[offsets[nodes]];
+        int[] weights = new int[offsets[nodes]];
+        int numEdge = 0;
+        for (Bucket bucket : rows)
+        {
+            numEdge += bucket.stored;
+            connectedCount += bucket.connected;
+        }
+        parallelFor(buckets, b -> {
+            int at = offsets[bucketStart[b]];
+            System.arraycopy(rows[b].targets, 0, targets, at, rows[b].targets.length);
+            System.arraycopy(rows[b].weights, 0, weights, at, rows[b].weights.length);
+            rows[b] = null;
+        });
+        graph = new GraphCSR(offsets, targets, weights, numEdge);
+    }
+
+
+    private int bucketOf(int v, int buckets)
+    {
+        return (int) ((long) v * buckets / nodes);
+    }
+
+
+    private void parallelFor(int count, IntConsumer body)
+    {
+        Parallel.forEach(pool, count, body);
+    }
+
+
+    /**
+     * The kept edges of one line range, in file order
+     */
+    private static class Chunk implements MtxReader.EdgeHandler
+    {
+        private final int    nodes;
+        private final double tau;
+        private int[]        from   = new int[1024];
+        private int[]        to     = new int[1024];
+        private int[]        weight = new int[1024];
+        private int          size;
+
+
+        Chunk(int nodes, double tau)
+        {
+            this.nodes = nodes;
+            this.tau = tau;
+        }
+
+
+        public void vertices(int n)
+        {
+            // ranges never contain the header line
+        }
+
+
+        public void edge(int v, int w, double value)
+        {
+            int wgt = InformationSpread.scaleWeight(value);
+            if (!InformationSpread.keepEdge(v, w, wgt, tau))
+                return;
+            if (v < 0 || v >= nodes || w < 0 || w >= nodes)
+                throw new ArrayIndexOutOfBoundsException("Edge (" + v + "," + w
+                    + ") outside " + nodes + " vertices");
+            if (size == from.length)
+            {
+                int grown = (int) Math.min(Integer.MAX_VALUE - 8, from.length * 2L);
+                from = Arrays.copyOf(from, grown);
+                to = Arrays.copyOf(to, grown);
+                weight = Arrays.copyOf(weight, grown);
+            }
+            from[size] = v;
+            to[size] = w;
+            weight[size] = wgt;
+            size++;
+        }
+    }
+
+
+    /**
+     * The finished rows of the vertices [lo, hi)
+     */
+    private static class Bucket
+    {
+        private int[] targets;
+        private int[] weights;
+        private int   stored;
+        private int   connected;
+
+
+        // Sort the entries [first, last) of src/dst/wgt, which all have a
+        // source in [lo, hi), into rows and write each row length to degree
+        Bucket(int lo, int hi, int first, int last, int[] src, int[] dst, int[] wgt,
+            int[] degree)
+        {
+            int len = last - first;
+            int[] rowStart = new int[hi - lo + 1];
+            for (int i = first; i < last; i++)
+                rowStart[src[i] - lo + 1]++;
+            for (int v = 0; v < hi - lo; v++)
+                rowStart[v + 1] += rowStart[v];
+            int[] next = Arrays.copyOf(rowStart, hi - lo);
+            int[] rowTo = new int[len];
+            int[] rowWeight = new int[len];
+            for (int i = first; i < last; i++)
+            {
+                int slot = next[src[i] - lo]++;
+                rowTo[slot] = dst[i];
+                rowWeight[slot] = wgt[i];
+            }
+
+            for (int v = 0; v < hi - lo; v++)
+            {
+                if (rowStart[v + 1] > rowStart[v])
+                    connected++; // weight 0 edges still connect their nodes
+                for (int i = rowStart[v]; i < rowStart[v + 1]; i++)
+                    if (rowWeight[i] != 0)
+                        stored++;
+            }
+            int[] newStart = new int[hi - lo + 1];
+            int write = GraphCSR.compactRows(rowStart, rowTo, rowWeight, newStart);
+            for (int v = 0; v < hi - lo; v++)
+                degree[lo + v] = newStart[v + 1] - newStart[v];
+            targets = Arrays.copyOf(rowTo, write);
+            weights = Arrays.copyOf(rowWeight, write);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers many most probable path queries at once. The pairs are sorted by
+ * source, so each source is searched once: a source with one destination
+ * stops at it, one with several settles its whole tree and reads every path
+ * off it. Workers take sources from a shared counter, each with its own
+ * PathEngine.Search and path buffer, and hand each path to the consumer
+ * straight from the buffer.
+ */
+public class PathBatch
+{
+    private final PathEngine   engine;
+    private final int          n;
+    private final ForkJoinPool pool;
+
+
+    /**
+     * @param engine the engine whose graph is searched
+     * @param n      the number of nodes of that graph
+     * @param pool   the pool that runs the workers
+     */
+    PathBatch(PathEngine engine, int n, ForkJoinPool pool)
+    {
+        this.engine = engine;
+        this.n = n;
+        this.pool = pool;
+    }
+
+
+    /**
+     * Find the path of every pair and pass it to the consumer, from the
+     * pool's threads
+     *
+     * @param sources      the origin of every pair
+     * @param destinations the destination of every pair
+     * @param consumer     receives each pair's path
+     */
+    void run(int[] sources, int[] destinations, IInformationSpread.PathConsumer consumer)
+    {
+        int count = sources.length;
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++)
+            order[i] = (long) sources[i] << 32 | i;
+        Arrays.sort(order);
+
+        // group k covers order[groupStart[k]] .. order[groupStart[k + 1] - 1]
+        int[] groupStart = new int[count + 1];
+        int groups = 0;
+        for (int i = 0; i < count; i++)
+            if (i == 0 || (int) (order[i] >>> 32) != (int) (order[i - 1] >>> 32))
+                groupStart[groups++] = i;
+        groupStart[groups] = count;
+        int total = groups;
+
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.max(1, Math.min(pool.getParallelism(), total));
+        Parallel.forEach(pool, workers, worker -> {
+            PathEngine.Search search = engine.newSearch();
+            int[] buffer = new int[n];
+            for (int k = next.getAndIncrement(); k < total; k = next.getAndIncrement())
+            {
+                int first = groupStart[k];
+                int last = groupStart[k + 1];
+                int source = (int) (order[first] >>> 32);
+                search.run(source, last - first == 1 ? destinations[(int) order[first]] : -1);
+                for (int i = first; i < last; i++)
+                {
+                    int pair = (int) order[i];
+                    int length = search.pathTo(destinations[pair], buffer);
+                    consumer.accept(pair, buffer, length);
+                }
+            }
+        });
+    }
+}
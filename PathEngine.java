@@ -0,0 +1,398 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Most probable path search over a fixed graph. An edge of weight w is
+ * crossed with probability w / 100, so the most probable path is the
+ * shortest one under the cost -log(w / 100). The costs of the weights 0 to
+ * 100 are kept in a table, and every search runs Dijkstra's algorithm on
+ * primitive arrays with an indexed heap, reading rows through a cursor of
+ * the graph. Nothing of the graph is copied, so an off-heap graph stays off
+ * the heap. A Search holds the scratch arrays and cursor of one thread and
+ * is reused from query to query, so a query allocates nothing but its
+ * result.
+ *
+ * The graph must be undirected, with both directions of every edge stored,
+ * since a bidirectional search walks the destination's side backwards.
+ */
+public class PathEngine
+{
+    // Predecessor stored in a tree for nodes its source cannot reach
+    static final int UNREACHED = -2;
+
+    // Rounding allowance when comparing sums of costs taken in different orders
+    private static final double SLACK = 1e-9;
+
+    // Cost of every weight from 0 to 100
+    private static final double[] COST = new double[101];
+
+    static
+    {
+        for (int w = 0; w < COST.length; w++)
+            COST[w] = -Math.log(w / 100.0);
+    }
+
+    private final Graph   graph;
+    private final int     n;
+    private final boolean bidirectional;
+    private final Search  search;
+    private final Search  reverse;
+
+
+    /**
+     * @param graph the graph to search; it must not change while the engine is used
+     */
+    PathEngine(Graph graph)
+    {
+        this.graph = graph;
+        n = graph.nodeCount();
+        boolean nonNegative = true;
+        NeighborCursor row = graph.cursor();
+        for (int v = 0; v < n && nonNegative; v++)
+        {
+            row.reset(v);
+            for (int i = row.start(), end = row.end(); i < end; i++)
+                nonNegative &= cost(row.weight(i)) >= 0;
+        }
+        bidirectional = nonNegative;
+        search = new Search();
+        reverse = bidirectional ? new Search() : null;
+    }
+
+
+    // -log(weight / 100), from the table for the usual weights
+    private static double cost(int weight)
+    {
+        return weight >= 0 && weight < COST.length ? COST[weight] : -Math.log(weight / 100.0);
+    }
+
+
+    /**
+     * Find a most probable path, reusing this engine's scratch arrays. Not
+     * safe to call from several threads; give each thread its own Search.
+     *
+     * @param source      the origin node
+     * @param destination the destination node
+     * @return the nodes from source to destination, or an empty list if
+     *         destination cannot be reached
+     */
+    List<Integer> path(int source, int destination)
+    {
+        if (source == destination)
+            return Collections.singletonList(source);
+        search.run(source, destination);
+        return search.pathTo(destination);
+    }
+
+
+    /**
+     * Find the same path as {@link #path}, searching from both ends at once.
+     * Not safe to call from several threads.
+     *
+     * Each step advances the side with the shorter queue, which keeps a
+     * well-connected endpoint from flooding the graph. The two sides stop
+     * by the usual rule: once the closest queued nodes of the two sides are
+     * together no nearer than the best meeting found, that meeting is
+     * optimal. Equally probable paths are common, so the meeting node alone
+     * does not fix the vertex list. The forward side is a prefix of the
+     * one-sided search, so it is resumed until the destination is popped,
+     * queueing only nodes that can still lie on a best path given the
+     * distances the backward side settled. Every node of the chosen path is
+     * settled in the same order as in the one-sided search, so the same
+     * path is picked among equals, while the resumed part stays inside the
+     * backward side's ball. Costs must not be negative for the stopping
+     * rule to hold; if any is, this falls back to the one-sided search.
+     *
+     * @param source      the origin node
+     * @param destination the destination node
+     * @return the nodes from source to destination, or an empty list if
+     *         destination cannot be reached
+     */
+    List<Integer> bidirectionalPath(int source, int destination)
+    {
+        if (source == destination || !bidirectional)
+            return path(source, destination);
+
+        search.start(source);
+        reverse.start(destination);
+        double best = Double.POSITIVE_INFINITY;
+        while (search.radius() + reverse.radius() < best)
+        {
+            if (search.heap.size() <= reverse.heap.size())
+                best = search.step(reverse, best);
+            else
+                best = reverse.step(search, best);
+        }
+        if (best == Double.POSITIVE_INFINITY)
+            return new ArrayList<>();
+
+        if (search.settled[destination] != search.query)
+        {
+            double limit = best + SLACK * Math.max(1, best);
+            search.finish(destination, reverse, reverse.radius(), limit);
+        }
+        if (!search.reached(destination))
+            search.run(source, destination);
+        return search.pathTo(destination);
+    }
+
+
+    /**
+     * Build the complete tree of most probable paths from a source. Every
+     * node settled before the search would have stopped gets the same
+     * predecessor, so the tree yields exactly the paths of {@link #path}.
+     *
+     * @param source the origin node
+     * @return the predecessor of every node: -1 for the source and
+     *         UNREACHED for nodes it cannot reach
+     */
+    int[] tree(int source)
+    {
+        search.run(source, -1);
+        int[] tree = new int[n];
+        for (int v = 0; v < n; v++)
+            tree[v] = search.reached(v) ? search.predecessor(v) : UNREACHED;
+        return tree;
+    }
+
+
+    /**
+     * @param tree        a tree built by {@link #tree}
+     * @param destination a node
+     * @return the path in the tree from its source to destination, or an
+     *         empty list if the source cannot reach destination
+     */
+    static List<Integer> pathTo(int[] tree, int destination)
+    {
+        List<Integer> path = new ArrayList<>();
+        if (tree[destination] == UNREACHED)
+            return path;
+        for (int at = destination; at != -1; at = tree[at])
+            path.add(at);
+        Collections.reverse(path);
+        return path;
+    }
+
+
+    /**
+     * @return fresh scratch space for searches on another thread
+     */
+    Search newSearch()
+    {
+        return new Search();
+    }
+
+
+    /**
+     * Scratch space for one search at a time. Entries of the distance and
+     * predecessor arrays are only valid when stamped with the current query,
+     * so nothing has to be cleared between queries.
+     */
+    class Search
+    {
+        private final double[]       dist    = new double[n];
+        private final int[]          pred    = new int[n];
+        private final int[]          seen    = new int[n];
+        private final int[]          settled = new int[n];
+        private final IndexedMinHeap heap    = new IndexedMinHeap(n);
+        private final NeighborCursor row     = graph.cursor();
+        private int                  query;
+        private int                  source;
+
+
+        /**
+         * Run Dijkstra's algorithm from source until stop is settled
+         *
+         * @param from the origin node
+         * @param stop the node to stop at, or -1 to settle every reachable node
+         */
+        void run(int from, int stop)
+        {
+            start(from);
+            finish(stop, null, 0, 0);
+        }
+
+
+        // Start a new query with only the origin queued
+        private void start(int from)
+        {
+            heap.clear();
+            if (++query == Integer.MAX_VALUE)
+            {
+                Arrays.fill(seen, 0);
+                Arrays.fill(settled, 0);
+                query = 1;
+            }
+            source = from;
+            seen[from] = query;
+            dist[from] = 0;
+            pred[from] = -1;
+            heap.push(from, 0);
+        }
+
+
+        /*
+         * Settle queued nodes until stop is popped. With a guide, a node is
+         * only queued while its distance plus the guide's lower bound on the
+         * distance left stays within limit.
+         */
+        private void finish(int stop, Search guide, double radius, double limit)
+        {
+            while (!heap.isEmpty())
+            {
+                int u = heap.pop();
+                if (u == stop)
+                    break;
+                settled[u] = query;
+                double du = dist[u];
+                row.reset(u);
+                int[] ids = row.ids();
+                for (int i = row.start(), end = row.end(); i < end; i++)
+                {
+                    int v = ids[i];
+                    if (settled[v] == query)
+                        continue;
+                    double dv = du + cost(row.weight(i));
+                    if (guide != null && dv + guide.lowerBound(v, radius) > limit)
+                        continue;
+                    if (seen[v] != query || dv < dist[v])
+                    {
+                        seen[v] = query;
+                        dist[v] = dv;
+                        pred[v] = u;
+                        heap.push(v, dv);
+                    }
+                }
+            }
+            heap.clear();
+        }
+
+
+        // Distance from v to this search's source if v is settled, else radius
+        private double lowerBound(int v, double radius)
+        {
+            return settled[v] == query ? dist[v] : radius;
+        }
+
+
+        /*
+         * Settle the closest queued node and relax its edges, updating best
+         * with every path that continues into a node the other search has seen
+         */
+        private double step(Search other, double best)
+        {
+            int u = heap.pop();
+            settled[u] = query;
+            double du = dist[u];
+            row.reset(u);
+            int[] ids = row.ids();
+            for (int i = row.start(), end = row.end(); i < end; i++)
+            {
+                int v = ids[i];
+                double dv = du + cost(row.weight(i));
+                if (other.seen[v] == other.query)
+                    best = Math.min(best, dv + other.dist[v]);
+                if (settled[v] == query)
+                    continue;
+                if (seen[v] != query || dv < dist[v])
+                {
+                    seen[v] = query;
+                    dist[v] = dv;
+                    pred[v] = u;
+                    heap.push(v, dv);
+                }
+            }
+            return best;
+        }
+
+
+        // Key of the closest queued node, infinite once the queue is empty
+        private double radius()
+        {
+            return heap.isEmpty() ? Double.POSITIVE_INFINITY : heap.minKey();
+        }
+
+
+        /**
+         * @param v a node
+         * @return true if the last run reached v
+         */
+        boolean reached(int v)
+        {
+            return seen[v] == query;
+        }
+
+
+        /**
+         * @param v a node reached by the last run
+         * @return the cost of the best path found to v
+         */
+        double distance(int v)
+        {
+            return dist[v];
+        }
+
+
+        /**
+         * @param v a node reached by the last run
+         * @return the node before v on the best path found, -1 for the source
+         */
+        int predecessor(int v)
+        {
+            return pred[v];
+        }
+
+
+        /**
+         * @param destination a node
+         * @return the path the last run found from its source to destination,
+         *         or an empty list if it was not reached
+         */
+        List<Integer> pathTo(int destination)
+        {
+            if (!reached(destination))
+                return new ArrayList<>();
+            List<Integer> path = new ArrayList<>();
+            for (int at = destination; at != -1; at = pred[at])
+                path.add(at);
+            Collections.reverse(path);
+            return path;
+        }
+
+
+        /**
+         * Write the path the last run found to destination at the start of
+         * an array
+         *
+         * @param destination a node
+         * @param into        room for up to every node of the graph
+         * @return the number of nodes written, 0 if destination was not reached
+         */
+        int pathTo(int destination, int[] into)
+        {
+            if (!reached(destination))
+                return 0;
+            int length = 0;
+            for (int at = destination; at != -1; at = pred[at])
+                into[length++] = at;
+            for (int i = 0, j = length - 1; i < j; i++, j--)
+            {
+                int swap = into[i];
+                into[i] = into[j];
+                into[j] = swap;
+            }
+            return length;
+        }
+
+
+        /**
+         * @return the source of the last run
+         */
+        int source()
+        {
+            return source;
+        }
+    }
+}
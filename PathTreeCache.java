@@ -0,0 +1,101 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Least recently used cache of single-source shortest path trees, keyed by
+ * source. A tree is the predecessor array of a complete search, so every
+ * path from its source is read off it in time proportional to the path's
+ * length. Trees are evicted once together they take more than a budget of
+ * bytes.
+ */
+public class PathTreeCache
+{
+    private final LinkedHashMap<Integer, int[]> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private final long budget;
+    private long       bytes;
+    private long       hits;
+    private long       misses;
+    private long       evictions;
+
+
+    /**
+     * @param budget the most bytes of predecessor arrays to keep
+     */
+    PathTreeCache(long budget)
+    {
+        this.budget = budget;
+    }
+
+
+    /**
+     * Look up the tree of a source, counting a hit or a miss
+     *
+     * @param source the source node
+     * @return its tree, or null if it is not cached
+     */
+    int[] get(int source)
+    {
+        int[] tree = trees.get(source);
+        if (tree == null)
+            misses++;
+        else
+            hits++;
+        return tree;
+    }
+
+
+    /**
+     * Cache the tree of a source, evicting the least recently used trees
+     * until the budget is met. A tree larger than the whole budget is not
+     * kept.
+     *
+     * @param source the source node
+     * @param tree   its predecessor array
+     */
+    void put(int source, int[] tree)
+    {
+        long size = 4L * tree.length;
+        if (size > budget)
+            return;
+        int[] old = trees.put(source, tree);
+        if (old != null)
+            bytes -= 4L * old.length;
+        bytes += size;
+        Iterator<int[]> eldest = trees.values().iterator();
+        while (bytes > budget)
+        {
+            bytes -= 4L * eldest.next().length;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+
+    // Drop every tree; the counters are kept
+    void clear()
+    {
+        trees.clear();
+        bytes = 0;
+    }
+
+
+    // Return the number of lookups that found their tree
+    long hits()
+    {
+        return hits;
+    }
+
+
+    // Return the number of lookups that did not find their tree
+    long misses()
+    {
+        return misses;
+    }
+
+
+    // Return the number of trees dropped to stay within the budget
+    long evictions()
+    {
+        return evictions;
+    }
+}
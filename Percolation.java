@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * Site percolation by the Newman-Ziff method (Newman and Ziff, "Efficient
+ * Monte Carlo algorithm and high-precision results for percolation"). To
+ * follow the largest component while nodes are removed in some order, the
+ * nodes are added back in the reverse order instead, into a union-find with
+ * union by size and path halving. Every edge is looked at twice over the
+ * whole curve, so it takes near-linear time instead of a component search
+ * per removal.
+ */
+public class Percolation
+{
+    private final NeighborCursor neighbors;
+    private final int            n;
+
+
+    /**
+     * @param graph the graph whose nodes 1 .. n-1 are removed; it must not
+     *              change while the curve is computed
+     */
+    Percolation(Graph graph)
+    {
+        this.neighbors = graph.cursor();
+        this.n = graph.nodeCount();
+    }
+
+
+    /**
+     * Follow the largest component as nodes are removed
+     *
+     * @param order every node from 1 to n-1 once, in the order of removal
+     * @return for every k from 0 to order.length, the number of nodes in the
+     *         largest component once the first k nodes are removed
+     */
+    int[] giantSizes(int[] order)
+    {
+        int[] parent = new int[n];
+        int[] size = new int[n];
+        Arrays.fill(parent, -1); // not added back yet
+        int[] giant = new int[order.length + 1];
+        int largest = 0;
+        for (int k = order.length - 1; k >= 0; k--)
+        {
+            int v = order[k];
+            parent[v] = v;
+            size[v] = 1;
+            int root = v;
+            neighbors.reset(v);
+            int[] ids = neighbors.ids();
+            for (int i = neighbors.start(), end = neighbors.end(); i < end; i++)
+            {
+                int w = ids[i];
+                if (parent[w] < 0)
+                    continue;
+                int other = find(parent, w);
+                if (other == root)
+                    continue;
+                if (size[other] > size[root])
+                {
+                    int swap = root;
+                    root = other;
+                    other = swap;
+                }
+                parent[other] = root;
+                size[root] += size[other];
+            }
+            largest = Math.max(largest, size[root]);
+            giant[k] = largest;
+        }
+        return giant;
+    }
+
+
+    // Root of v's set, halving the path on the way
+    private static int find(int[] parent, int v)
+    {
+        while (parent[v] != v)
+        {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+}
@@ -0,0 +1,301 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Registry of what every InformationSpread operation and phase costs: a
+ * latency histogram, the edges scanned and the bytes allocated, summed
+ * over calls. There is one per JVM. It is off unless started with
+ * -Dspread.metrics=true or enabled here, and only once it is first enabled
+ * is it published as the platform MXBean InformationSpread:type=Metrics,
+ * so that JMX is not loaded while metrics are off.
+ */
+public class SpreadMetrics implements SpreadMetricsMXBean
+{
+    /** The name of the MXBean */
+    public static final String OBJECT_NAME = "InformationSpread:type=Metrics";
+
+    private static final int           BUCKETS  = 64; // bucket b holds latencies in [2^b, 2^(b+1)) ns
+    private static final SpreadMetrics INSTANCE = new SpreadMetrics();
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private boolean          registered; // guarded by this
+
+
+    private SpreadMetrics()
+    {
+        setEnabled(Boolean.getBoolean("spread.metrics"));
+    }
+
+
+    /**
+     * @return the registry of this JVM
+     */
+    public static SpreadMetrics get()
+    {
+        return INSTANCE;
+    }
+
+
+    // Publish the registry once; metrics still work in-process if JMX refuses it
+    private synchronized void register()
+    {
+        if (registered)
+            return;
+        registered = true;
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                new ObjectName(OBJECT_NAME));
+        }
+        catch (JMException e)
+        {
+            System.err.println("Could not register " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+
+    @Override
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+
+    @Override
+    public void setEnabled(boolean enabled)
+    {
+        if (enabled)
+            register();
+        this.enabled = enabled;
+    }
+
+
+    @Override
+    public List<OperationStats> getOperations()
+    {
+        List<OperationStats> all = new ArrayList<>();
+        entries.forEach((name, entry) -> all.add(entry.snapshot(name)));
+        all.sort(Comparator.comparing(OperationStats::getName));
+        return all;
+    }
+
+
+    /**
+     * @param name an operation or phase
+     * @return what was measured of it, or null if it has not run
+     */
+    public OperationStats operation(String name)
+    {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.snapshot(name);
+    }
+
+
+    @Override
+    public void reset()
+    {
+        entries.clear();
+    }
+
+
+    /**
+     * Add one call
+     *
+     * @param name    the operation or phase
+     * @param phase   true for a phase
+     * @param nanos   how long it took
+     * @param scanned the adjacency entries it read
+     * @param bytes   the bytes its thread allocated
+     */
+    void record(String name, boolean phase, long nanos, long scanned, long bytes)
+    {
+        Entry entry = entries.computeIfAbsent(name, key -> new Entry(phase));
+        entry.calls.increment();
+        entry.nanos.add(nanos);
+        entry.maxNanos.accumulate(nanos);
+        entry.scanned.add(scanned);
+        entry.bytes.add(bytes);
+        entry.histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, nanos)));
+    }
+
+
+    // Running sums of one operation, updated without locks
+    private static final class Entry
+    {
+        final boolean         phase;
+        final LongAdder       calls     = new LongAdder();
+        final LongAdder       nanos     = new LongAdder();
+        final LongAccumulator maxNanos  = new LongAccumulator(Math::max, 0);
+        final LongAdder       scanned   = new LongAdder();
+        final LongAdder       bytes     = new LongAdder();
+        final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+
+        Entry(boolean phase)
+        {
+            this.phase = phase;
+        }
+
+
+        OperationStats snapshot(String name)
+        {
+            long[] counts = new long[BUCKETS];
+            for (int b = 0; b < BUCKETS; b++)
+                counts[b] = histogram.get(b);
+            return new OperationStats(name, phase, calls.sum(), nanos.sum(), maxNanos.get(),
+                scanned.sum(), bytes.sum(), counts);
+        }
+    }
+
+
+    /**
+     * What was measured of one operation or phase at some moment. Sums are
+     * taken one after the other, so calls ending meanwhile may show in some
+     * of them only.
+     */
+    public static final class OperationStats
+    {
+        private final String  name;
+        private final boolean phase;
+        private final long    calls;
+        private final long    totalNanos;
+        private final long    maxNanos;
+        private final long    edgesScanned;
+        private final long    bytesAllocated;
+        private final long[]  histogram;
+
+
+        OperationStats(String name, boolean phase, long calls, long totalNanos, long maxNanos,
+            long edgesScanned, long bytesAllocated, long[] histogram)
+        {
+            this.name = name;
+            this.phase = phase;
+            this.calls = calls;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.edgesScanned = edgesScanned;
+            this.bytesAllocated = bytesAllocated;
+            this.histogram = histogram;
+        }
+
+
+        /**
+         * @return the operation or phase
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+
+        /**
+         * @return true for a phase inside operations
+         */
+        public boolean isPhase()
+        {
+            return phase;
+        }
+
+
+        /**
+         * @return the number of calls
+         */
+        public long getCalls()
+        {
+            return calls;
+        }
+
+
+        /**
+         * @return the time of all calls, in nanoseconds
+         */
+        public long getTotalNanos()
+        {
+            return totalNanos;
+        }
+
+
+        /**
+         * @return the longest call, in nanoseconds
+         */
+        public long getMaxNanos()
+        {
+            return maxNanos;
+        }
+
+
+        /**
+         * @return the median latency in nanoseconds, to within a factor of 2
+         */
+        public long getP50Nanos()
+        {
+            return percentile(0.5);
+        }
+
+
+        /**
+         * @return the 99th percentile latency in nanoseconds, to within a
+         *         factor of 2
+         */
+        public long getP99Nanos()
+        {
+            return percentile(0.99);
+        }
+
+
+        /**
+         * @return the adjacency entries read by all calls
+         */
+        public long getEdgesScanned()
+        {
+            return edgesScanned;
+        }
+
+
+        /**
+         * @return the bytes allocated by all calls, on their own threads
+         */
+        public long getBytesAllocated()
+        {
+            return bytesAllocated;
+        }
+
+
+        /**
+         * @return the number of calls taking from 2^b to 2^(b+1) - 1
+         *         nanoseconds, for every b
+         */
+        public long[] getHistogram()
+        {
+            return histogram.clone();
+        }
+
+
+        // Upper end of the bucket holding the given share of the calls, capped by the maximum
+        private long percentile(double share)
+        {
+            long total = 0;
+            for (long count : histogram)
+                total += count;
+            long rank = (long) Math.ceil(share * total);
+            long seen = 0;
+            for (int b = 0; b < histogram.length; b++)
+            {
+                seen += histogram[b];
+                if (seen >= rank && seen > 0)
+                    return Math.min(maxNanos, (2L << b) - 1);
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.List;
+
+/**
+ * JMX view of {@link SpreadMetrics}, registered on the platform MBean
+ * server as InformationSpread:type=Metrics
+ */
+public interface SpreadMetricsMXBean
+{
+    /**
+     * @return true if operations are being measured
+     */
+    boolean isEnabled();
+
+
+    /**
+     * @param enabled true to measure operations from now on
+     */
+    void setEnabled(boolean enabled);
+
+
+    /**
+     * @return what was measured of every operation and phase seen so far,
+     *         by name
+     */
+    List<SpreadMetrics.OperationStats> getOperations();
+
+
+    /**
+     * Forget everything measured so far
+     */
+    void reset();
+}
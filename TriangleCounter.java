@@ -0,0 +1,184 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the triangles through every vertex of an undirected graph in one
+ * pass. Every edge is pointed from the endpoint of lower degree to the one
+ * of higher degree (ties broken by id), so each vertex keeps at most
+ * O(sqrt m) out-neighbors. Every triangle is then found exactly once, at its
+ * lowest vertex, by intersecting two sorted out-neighbor lists, which takes
+ * O(m sqrt m) time overall. Vertices are split across a ForkJoinPool.
+ */
+public class TriangleCounter
+{
+    // Vertices handed to one task
+    private static final int BLOCK = 256;
+
+    private final int       n;
+    private final int[]     degree; // neighbors, a self-loop included
+    private final boolean[] selfLoop;
+    private final int[]     outStart;
+    private final int[]     outTarget;
+
+
+    private TriangleCounter(Graph graph)
+    {
+        n = graph.nodeCount();
+        degree = new int[n];
+        selfLoop = new boolean[n];
+        int[] plain = new int[n]; // degree without the self-loop
+        for (int v = 0; v < n; v++)
+        {
+            degree[v] = graph.degree(v);
+            selfLoop[v] = graph.hasEdge(v, v);
+            plain[v] = selfLoop[v] ? degree[v] - 1 : degree[v];
+        }
+
+        NeighborCursor neighbors = graph.cursor();
+        outStart = new int[n + 1];
+        for (int v = 0; v < n; v++)
+        {
+            int out = 0;
+            neighbors.reset(v);
+            int[] ids = neighbors.ids();
+            for (int i = neighbors.start(), end = neighbors.end(); i < end; i++)
+                if (precedes(v, ids[i], plain))
+                    out++;
+            outStart[v + 1] = outStart[v] + out;
+        }
+        outTarget = new int[outStart[n]];
+        for (int v = 0; v < n; v++)
+        {
+            int pos = outStart[v];
+            neighbors.reset(v);
+            int[] ids = neighbors.ids();
+            for (int i = neighbors.start(), end = neighbors.end(); i < end; i++)
+                if (precedes(v, ids[i], plain))
+                    outTarget[pos++] = ids[i];
+            Arrays.sort(outTarget, outStart[v], pos);
+        }
+    }
+
+
+    // True if the edge (v,w) points from v to w
+    private static boolean precedes(int v, int w, int[] plain)
+    {
+        return v != w && (plain[v] < plain[w] || (plain[v] == plain[w] && v < w));
+    }
+
+
+    /**
+     * Compute the clustering coefficient of every vertex the way
+     * InformationSpread.clustCoeff defines it: the fraction of pairs of
+     * neighbors that are themselves connected, 0 for degree 0 or 1. A
+     * self-loop makes a vertex its own neighbor, connected to all the others.
+     *
+     * @param graph an undirected graph, stored with both directions of each edge
+     * @param pool  the pool that does the counting
+     * @return the clustering coefficient of every vertex
+     */
+    static double[] clusteringCoefficients(Graph graph, ForkJoinPool pool)
+    {
+        if (graph instanceof GraphM)
+            return matrixCoefficients((GraphM) graph, pool);
+        TriangleCounter counter = new TriangleCounter(graph);
+        long[] triangles = counter.count(pool);
+        double[] coeff = new double[counter.n];
+        for (int v = 0; v < counter.n; v++)
+        {
+            long d = counter.degree[v];
+            if (d <= 1)
+                continue;
+            long t = triangles[v] + (counter.selfLoop[v] ? d - 1 : 0);
+            coeff[v] = (double) (2 * t) / (d * (d - 1));
+        }
+        return coeff;
+    }
+
+
+    /**
+     * The same coefficients on a bit matrix, without building out lists.
+     * ANDing the rows of v and of a neighbor w finds every common neighbor
+     * in n / 64 word operations; less v and w themselves, which are common
+     * neighbors only through self-loops, that is the triangles on the edge
+     * (v,w). Summed over w, every triangle through v is counted twice.
+     */
+    private static double[] matrixCoefficients(GraphM graph, ForkJoinPool pool)
+    {
+        int n = graph.nodeCount();
+        double[] coeff = new double[n];
+        Parallel.forEach(pool, (n + BLOCK - 1) / BLOCK, block -> {
+            NeighborCursor neighbors = graph.cursor();
+            int end = Math.min(n, (block + 1) * BLOCK);
+            for (int v = block * BLOCK; v < end; v++)
+            {
+                long d = graph.degree(v);
+                if (d <= 1)
+                    continue;
+                boolean loop = graph.hasEdge(v, v);
+                long twice = 0;
+                neighbors.reset(v);
+                int[] ids = neighbors.ids();
+                for (int i = neighbors.start(), last = neighbors.end(); i < last; i++)
+                {
+                    int w = ids[i];
+                    if (w != v)
+                        twice += graph.commonNeighbors(v, w) - (loop ? 1 : 0)
+                            - (graph.hasEdge(w, w) ? 1 : 0);
+                }
+                long t = twice / 2 + (loop ? d - 1 : 0);
+                coeff[v] = (double) (2 * t) / (d * (d - 1));
+            }
+        });
+        return coeff;
+    }
+
+
+    private long[] count(ForkJoinPool pool)
+    {
+        AtomicLongArray shared = new AtomicLongArray(n);
+        Parallel.forEach(pool, (n + BLOCK - 1) / BLOCK, block -> {
+            int end = Math.min(n, (block + 1) * BLOCK);
+            for (int u = block * BLOCK; u < end; u++)
+            {
+                long own = 0;
+                for (int i = outStart[u]; i < outStart[u + 1]; i++)
+                {
+                    int v = outTarget[i];
+                    long found = 0;
+                    // merge the two sorted out lists
+                    int a = outStart[u];
+                    int b = outStart[v];
+                    while (a < outStart[u + 1] && b < outStart[v + 1])
+                    {
+                        int x = outTarget[a];
+                        int y = outTarget[b];
+                        if (x < y)
+                            a++;
+                        else if (x > y)
+                            b++;
+                        else
+                        {
+                            shared.getAndIncrement(x);
+                            found++;
+                            a++;
+                            b++;
+                        }
+                    }
+                    if (found > 0)
+                    {
+                        shared.getAndAdd(v, found);
+                        own += found;
+                    }
+                }
+                if (own > 0)
+                    shared.getAndAdd(u, own);
+            }
+        });
+        long[] triangles = new long[n];
+        for (int v = 0; v < n; v++)
+            triangles[v] = shared.get(v);
+        return triangles;
+    }
+}
@@ -0,0 +1,192 @@
+package spread;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A data set and its filtered edges, shared by the benchmarks that run on
+ * it. The bundled data sets are read from the working directory or the one
+ * above it. A data set named generated-N.mtx is a generated graph of N
+ * nodes, written to the temporary directory the first time it is used.
+ * Only the bundled data sets run by default; pick others with
+ * -p dataSet=a.mtx,b.mtx.
+ */
+@State(Scope.Benchmark)
+public class DataSet implements MtxReader.EdgeHandler
+{
+    static final double TAU     = 0.3;
+    static final int    SAMPLES = 1024; // seeds and pairs cycled through, a power of 2
+
+    @Param({"test_graph.mtx", "socfb-American75.mtx"})
+    public String dataSet;
+
+    Path  file;
+    int   n;
+    int   count;
+    int[] from   = new int[16];
+    int[] to     = new int[16];
+    int[] weight = new int[16];
+    int[] degree;
+    int[] nodes;        // sample node ids
+    int   medianDegree; // the degree strategy parameter
+
+
+    @Setup(Level.Trial)
+    public void load() throws IOException
+    {
+        file = locate(dataSet);
+        if (!Files.exists(file))
+            generate(file);
+        count = 0;
+        if (!MtxReader.read(file, this))
+            throw new IOException("No header line in " + file);
+
+        Random random = new Random(20);
+        nodes = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+            nodes[i] = 1 + random.nextInt(n - 1);
+        int[] sorted = Arrays.copyOfRange(degree, 1, n);
+        Arrays.sort(sorted);
+        medianDegree = sorted[sorted.length / 2];
+    }
+
+
+    public void vertices(int vertices)
+    {
+        n = vertices + 1;
+        degree = new int[n];
+    }
+
+
+    public void edge(int v, int w, double value)
+    {
+        int scaled = InformationSpread.scaleWeight(value);
+        if (!InformationSpread.keepEdge(v, w, scaled, TAU * 100))
+            return;
+        if (count == from.length)
+        {
+            from = Arrays.copyOf(from, count * 2);
+            to = Arrays.copyOf(to, count * 2);
+            weight = Arrays.copyOf(weight, count * 2);
+        }
+        from[count] = v;
+        to[count] = w;
+        weight[count] = scaled;
+        count++;
+        degree[v]++;
+        degree[w]++;
+    }
+
+
+    /**
+     * @param call a call counter
+     * @return the sample node for the call
+     */
+    int node(int call)
+    {
+        return nodes[call & (SAMPLES - 1)];
+    }
+
+
+    /**
+     * @return the data set's path, as loadGraphFromDataSet takes it
+     */
+    String path()
+    {
+        return file.toString();
+    }
+
+
+    // Store the edges in a graph, both directions like the loader
+    Graph fill(Graph graph)
+    {
+        graph.init(n);
+        for (int i = 0; i < count; i++)
+        {
+            graph.addEdge(from[i], to[i], weight[i]);
+            graph.addEdge(to[i], from[i], weight[i]);
+        }
+        return graph;
+    }
+
+
+    GraphCSR compress()
+    {
+        GraphCSR.Builder builder = new GraphCSR.Builder(n);
+        for (int i = 0; i < count; i++)
+        {
+            builder.addEdge(from[i], to[i], weight[i]);
+            builder.addEdge(to[i], from[i], weight[i]);
+        }
+        return builder.build();
+    }
+
+
+    // A generated data set lives in the temporary directory, a bundled one
+    // here or in the repository root above the benchmark module
+    private static Path locate(String name)
+    {
+        if (name.startsWith("generated-"))
+            return Paths.get(System.getProperty("java.io.tmpdir"), name);
+        Path file = Paths.get(name);
+        return Files.exists(file) ? file : Paths.get("..", name);
+    }
+
+
+    /*
+     * Write a preferential attachment graph: every new node links to 8
+     * earlier ones, picked in proportion to their degree, so the degrees
+     * follow a power law like a social graph's. Weights are uniform in
+     * 0.01 .. 1.00.
+     */
+    private static void generate(Path file) throws IOException
+    {
+        String name = file.getFileName().toString();
+        int nodes = Integer.parseInt(name.substring("generated-".length(), name.indexOf('.')));
+        int links = 8;
+        Random random = new Random(nodes);
+        int[] ends = new int[2 * links * nodes];
+        int endCount = 0;
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), name, ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp))
+        {
+            long edgeCount = (long) links * (nodes - links - 1) + (long) links * (links + 1) / 2;
+            out.write(nodes + " " + nodes + " " + edgeCount + "\n");
+            for (int v = 2; v <= nodes; v++)
+            {
+                int picks = Math.min(links, v - 1);
+                int[] chosen = new int[picks];
+                for (int k = 0; k < picks; k++)
+                {
+                    int w;
+                    boolean repeat;
+                    do
+                    {
+                        w = v <= links + 1 || endCount == 0 ? 1 + random.nextInt(v - 1)
+                            : ends[random.nextInt(endCount)];
+                        repeat = false;
+                        for (int j = 0; j < k; j++)
+                            repeat |= chosen[j] == w;
+                    }
+                    while (repeat);
+                    chosen[k] = w;
+                    out.write(w + " " + v + " " + (1 + random.nextInt(100)) / 100.0 + "\n");
+                    ends[endCount++] = w;
+                    ends[endCount++] = v;
+                }
+            }
+        }
+        Files.move(temp, file);
+    }
+}
@@ -0,0 +1,145 @@
+package spread;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Graph operations of every backend, on the same edges.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmarks
+{
+    /**
+     * The Graph implementations compared with each other. A new backend only
+     * needs a constant here to be measured everywhere.
+     */
+    public enum Backend
+    {
+        GraphL(Integer.MAX_VALUE, data -> data.fill(new GraphL())),
+        GraphM(40_000, data -> data.fill(new GraphM())), // n * n bits
+        GraphCSR(Integer.MAX_VALUE, DataSet::compress),
+        GraphOffHeap(Integer.MAX_VALUE, data -> offHeap(data.compress()));
+
+        final int                      maxNodes;
+        final Function<DataSet, Graph> build;
+
+
+        Backend(int maxNodes, Function<DataSet, Graph> build)
+        {
+            this.maxNodes = maxNodes;
+            this.build = build;
+        }
+    }
+
+    @Param
+    public Backend backend;
+
+    private DataSet        data;
+    private Graph          graph;
+    private NeighborCursor cursor;
+    private int            call;
+
+
+    @Setup(Level.Trial)
+    public void setUp(DataSet data)
+    {
+        if (data.n > backend.maxNodes)
+            throw new IllegalStateException(backend + " holds at most " + backend.maxNodes
+                + " nodes, not " + data.n + "; leave it out with -p backend=...");
+        this.data = data;
+        graph = backend.build.apply(data);
+        cursor = graph.cursor();
+    }
+
+
+    @Benchmark
+    public long build()
+    {
+        return backend.build.apply(data).edgeCount();
+    }
+
+
+    @Benchmark
+    public int neighbors()
+    {
+        return graph.neighbors(data.node(call++)).length;
+    }
+
+
+    @Benchmark
+    public long cursor()
+    {
+        cursor.reset(data.node(call++));
+        int[] ids = cursor.ids();
+        long sum = 0;
+        for (int i = cursor.start(), end = cursor.end(); i < end; i++)
+            sum += ids[i];
+        return sum;
+    }
+
+
+    @Benchmark
+    public boolean hasEdge()
+    {
+        int i = edge();
+        return graph.hasEdge(data.from[i], data.to[i]);
+    }
+
+
+    @Benchmark
+    public int weight()
+    {
+        int i = edge();
+        return graph.weight(data.from[i], data.to[i]);
+    }
+
+
+    @Benchmark
+    public double[] clusteringCoefficients()
+    {
+        return TriangleCounter.clusteringCoefficients(graph, ForkJoinPool.commonPool());
+    }
+
+
+    // The next stored edge, cycling through them
+    private int edge()
+    {
+        int i = call;
+        call = i + 1 == data.count ? 0 : i + 1;
+        return i;
+    }
+
+
+    private static Graph offHeap(Graph graph)
+    {
+        try
+        {
+            return GraphOffHeap.copyOf(graph);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Could not map the graph", e);
+        }
+    }
+}
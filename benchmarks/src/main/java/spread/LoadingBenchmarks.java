@@ -0,0 +1,86 @@
+package spread;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * loadGraphFromDataSet with each way of loading and storing the graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadingBenchmarks
+{
+    @Param({"list", "compressed", "parallelLoading", "offHeap", "snapshot"})
+    public String loader;
+
+    private InformationSpread spread;
+    private DataSet           data;
+    private Path              snapshot;
+    private int               call;
+
+
+    @Setup(Level.Trial)
+    public void create(DataSet data) throws IOException
+    {
+        this.data = data;
+        spread = new InformationSpread(!loader.equals("list"));
+        if (loader.equals("parallelLoading"))
+            spread.setParallelLoading(true);
+        else if (loader.equals("offHeap"))
+            spread.setOffHeap(true);
+        else if (loader.equals("snapshot"))
+        {
+            snapshot = Files.createTempFile("graph", ".snap");
+            spread.loadGraphFromDataSet(data.path(), DataSet.TAU, snapshot.toString()); // writes it
+        }
+        else if (!loader.equals("list") && !loader.equals("compressed"))
+            throw new IllegalArgumentException("Unknown loader " + loader);
+    }
+
+
+    @Benchmark
+    public int loadGraphFromDataSet()
+    {
+        if (snapshot != null)
+            return spread.loadGraphFromDataSet(data.path(), DataSet.TAU, snapshot.toString());
+        return spread.loadGraphFromDataSet(data.path(), DataSet.TAU);
+    }
+
+
+    // Mappings, and the dirty pages of the off-heap scratch file, are only
+    // released by a collection, which these loads seldom trigger
+    @TearDown(Level.Invocation)
+    public void release()
+    {
+        if ((loader.equals("offHeap") || snapshot != null) && ++call % 16 == 0)
+            System.gc();
+    }
+
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException
+    {
+        if (snapshot != null)
+            Files.deleteIfExists(snapshot);
+    }
+}
@@ -0,0 +1,64 @@
+package spread;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Shortest paths on a compressed graph with each path option. Every option
+ * answers the same pairs, from SOURCES sources.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmarks
+{
+    static final int SOURCES = 64; // few enough for the tree cache
+
+    @Param({"plainPaths", "bidirectionalPaths", "pathCache", "pathIndex"})
+    public String option;
+
+    private InformationSpread spread;
+    private DataSet           data;
+    private int               call;
+
+
+    @Setup(Level.Trial)
+    public void load(DataSet data)
+    {
+        this.data = data;
+        spread = new InformationSpread(true);
+        if (option.equals("bidirectionalPaths"))
+            spread.setBidirectionalPaths(true);
+        else if (option.equals("pathCache"))
+            spread.setPathCacheBudget(1L << 28);
+        else if (!option.equals("plainPaths") && !option.equals("pathIndex"))
+            throw new IllegalArgumentException("Unknown path option " + option);
+        spread.loadGraphFromDataSet(data.path(), DataSet.TAU);
+        if (option.equals("pathIndex"))
+            spread.buildPathIndex();
+    }
+
+
+    @Benchmark
+    public List<Integer> path()
+    {
+        int i = call++;
+        return spread.path(data.nodes[i & (SOURCES - 1)], data.node(i + 1));
+    }
+}
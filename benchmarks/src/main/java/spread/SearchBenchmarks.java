@@ -0,0 +1,53 @@
+package spread;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Breadth-first searches on a compressed graph, with and without the
+ * parallel search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmarks
+{
+    @Param({"false", "true"})
+    public boolean parallelSearch;
+
+    private InformationSpread spread;
+    private DataSet           data;
+    private int               call;
+
+
+    @Setup(Level.Trial)
+    public void load(DataSet data)
+    {
+        this.data = data;
+        spread = new InformationSpread(true);
+        spread.setParallelSearch(parallelSearch);
+        spread.loadGraphFromDataSet(data.path(), DataSet.TAU);
+    }
+
+
+    @Benchmark
+    public int generations()
+    {
+        return spread.generations(data.node(call++), 0.5);
+    }
+}
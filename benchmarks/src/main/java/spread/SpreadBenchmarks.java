@@ -0,0 +1,256 @@
+package spread;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The IInformationSpread operations on a loaded graph, stored as adjacency
+ * lists or compressed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpreadBenchmarks
+{
+    static final int BATCH  = 64;  // seeds of one batch generations call
+    static final int TRIALS = 100; // outbreaks of one simulateOutbreaks call
+
+    private static final double[] LOWS  = {0.0, 0.1, 0.2, 0.3};
+    private static final double[] HIGHS = {0.1, 0.2, 0.3, 0.4};
+
+    @Param({"false", "true"})
+    public boolean compressed;
+
+    private InformationSpread spread;
+    private DataSet           data;
+    private int               call;
+    private int[]             sources;
+    private int[]             destinations;
+    private int[][]           batches;
+    private final LongAdder   lengths = new LongAdder();
+
+
+    @Setup(Level.Trial)
+    public void load(DataSet data)
+    {
+        this.data = data;
+        spread = new InformationSpread(compressed);
+        spread.loadGraphFromDataSet(data.path(), DataSet.TAU);
+        sources = Arrays.copyOf(data.nodes, DataSet.SAMPLES / 4);
+        destinations = Arrays.copyOfRange(data.nodes, DataSet.SAMPLES / 4, DataSet.SAMPLES / 2);
+        batches = new int[DataSet.SAMPLES / BATCH][];
+        for (int b = 0; b < batches.length; b++)
+            batches[b] = Arrays.copyOfRange(data.nodes, b * BATCH, (b + 1) * BATCH);
+    }
+
+
+    @Benchmark
+    public int[] getNeighbors()
+    {
+        return spread.getNeighbors(data.node(call++));
+    }
+
+
+    @Benchmark
+    public List<Integer> path()
+    {
+        int i = call++;
+        return spread.path(data.node(i), data.node(i + 1));
+    }
+
+
+    @Benchmark
+    public long paths()
+    {
+        spread.paths(sources, destinations, (pair, path, length) -> lengths.add(length));
+        return lengths.sum();
+    }
+
+
+    @Benchmark
+    public InformationSpread buildPathIndex()
+    {
+        spread.buildPathIndex();
+        return spread;
+    }
+
+
+    @Benchmark
+    public double avgDegree()
+    {
+        return spread.avgDegree();
+    }
+
+
+    @Benchmark
+    public double rNumber()
+    {
+        return spread.rNumber();
+    }
+
+
+    @Benchmark
+    public int generations()
+    {
+        return spread.generations(data.node(call++), 0.5);
+    }
+
+
+    @Benchmark
+    public int degree()
+    {
+        return spread.degree(data.node(call++));
+    }
+
+
+    @Benchmark
+    public Collection<Integer> degreeNodes()
+    {
+        return spread.degreeNodes(data.medianDegree);
+    }
+
+
+    @Benchmark
+    public int generationsDegree()
+    {
+        return spread.generationsDegree(data.node(call++), 0.5, data.medianDegree);
+    }
+
+
+    @Benchmark
+    public double rNumberDegree()
+    {
+        return spread.rNumberDegree(data.medianDegree);
+    }
+
+
+    @Benchmark
+    public double clustCoeff()
+    {
+        return spread.clustCoeff(data.node(call++));
+    }
+
+
+    @Benchmark
+    public Collection<Integer> clustCoeffNodes()
+    {
+        return spread.clustCoeffNodes(0.1, 0.3);
+    }
+
+
+    @Benchmark
+    public int generationsCC()
+    {
+        return spread.generationsCC(data.node(call++), 0.5, 0.1, 0.3);
+    }
+
+
+    @Benchmark
+    public double rNumberCC()
+    {
+        return spread.rNumberCC(0.1, 0.3);
+    }
+
+
+    @Benchmark
+    public Collection<Integer> highDegLowCCNodes()
+    {
+        return spread.highDegLowCCNodes(2 * data.medianDegree, 0.2);
+    }
+
+
+    @Benchmark
+    public int generationsHighDegLowCC()
+    {
+        return spread.generationsHighDegLowCC(data.node(call++), 0.5, 2 * data.medianDegree, 0.2);
+    }
+
+
+    @Benchmark
+    public double rNumberDegCC()
+    {
+        return spread.rNumberDegCC(2 * data.medianDegree, 0.2);
+    }
+
+
+    // The same BATCH seeds searched one by one, next to generationsBatch
+    @Benchmark
+    public long generationsEach()
+    {
+        int[] seeds = batches[call++ & (batches.length - 1)];
+        long sum = 0;
+        for (int seed : seeds)
+            sum += spread.generations(seed, 0.5);
+        return sum;
+    }
+
+
+    @Benchmark
+    public int[] generationsBatch()
+    {
+        return spread.generations(batches[call++ & (batches.length - 1)], 0.5);
+    }
+
+
+    // TRIALS outbreaks per operation; trials/s is TRIALS * 1e9 / (ns/op)
+    @Benchmark
+    public CascadeStats simulateOutbreaks()
+    {
+        int i = call++;
+        return spread.simulateOutbreaks(data.node(i), TRIALS, i);
+    }
+
+
+    @Benchmark
+    public InterventionSweep sweepDegree()
+    {
+        return spread.sweepDegree(data.node(call++), 0.5, data.medianDegree, data.medianDegree + 7);
+    }
+
+
+    @Benchmark
+    public InterventionSweep sweepCC()
+    {
+        return spread.sweepCC(data.node(call++), 0.5, LOWS, HIGHS);
+    }
+
+
+    @Benchmark
+    public double[] percolationDegree()
+    {
+        return spread.percolationDegree();
+    }
+
+
+    @Benchmark
+    public double[] percolationCC()
+    {
+        return spread.percolationCC();
+    }
+
+
+    @Benchmark
+    public double[] percolationDegCC()
+    {
+        return spread.percolationDegCC();
+    }
+}